@@ -0,0 +1,80 @@
+package com.example.database.benchmarks;
+
+import com.example.database.DatabaseApplication;
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import com.example.database.repositories.AuthorRepository;
+import com.example.database.repositories.BookRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Boots the real application against an embedded H2 database in PostgreSQL mode and seeds it with a synthetic catalog,
+// so that the service and controller benchmarks exercise the same Spring wiring, JPA mappings and SQL as production.
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {} // private no-arg constructor
+
+    public static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... arguments) {
+
+        String[] defaults = {
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=password",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.r2dbc.url=r2dbc:h2:mem:///benchmark?options=MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                "--spring.r2dbc.username=sa",
+                "--spring.r2dbc.password=password",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn",
+                "--server.port=0"
+        };
+        // Command line arguments take precedence over any application.properties found on the classpath, so the
+        // benchmarks never accidentally point at the PostgreSQL instance configured for the application.
+
+        return new SpringApplicationBuilder(DatabaseApplication.class)
+                .web(webApplicationType)
+                .run(Stream.concat(Stream.of(defaults), Stream.of(arguments)).toArray(String[]::new));
+    }
+
+    public static void seed(ConfigurableApplicationContext context, int authorCount, int bookCount) {
+
+        AuthorRepository authorRepository = context.getBean(AuthorRepository.class);
+        BookRepository bookRepository = context.getBean(BookRepository.class);
+
+        List<Author> authors = new ArrayList<>(authorCount);
+        for (int i = 0; i < authorCount; i++) {
+            authors.add(createAuthor(i));
+        }
+
+        List<Author> savedAuthors = new ArrayList<>(authorCount);
+        authorRepository.saveAll(authors).forEach(savedAuthors::add);
+        // saveAll returns the persisted (i.e. identified) authors, which are the ones the books must reference.
+
+        List<Book> books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            books.add(createBook(i, savedAuthors.get(i % authorCount)));
+        }
+        bookRepository.saveAll(books);
+    }
+
+    public static Author createAuthor(int i) {
+        return Author.builder()
+                .name("Author " + i)
+                .age(20 + i % 60)
+                .build();
+    }
+
+    public static Book createBook(int i, Author author) {
+        return Book.builder()
+                .isbn(String.format("978-0-%04d-%04d-%d", i / 10_000, i % 10_000, i % 10))
+                .title("Synthetic Title " + i)
+                .author(author)
+                .build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.database.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+// Measures GET /books end to end over a real HTTP connection: Tomcat, the dispatcher servlet, the controller, the
+// service, the repository, mapping and JSON serialisation of the page.
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+
+    @Param({"200"})
+    private int authorCount;
+
+    @Param({"10000"})
+    private int bookCount;
+
+    @Param({"0", "400"})
+    private int page;
+
+    @Param({"20"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private HttpRequest getBooksRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        context = BenchmarkApplication.start(WebApplicationType.SERVLET);
+        BenchmarkApplication.seed(context, authorCount, bookCount);
+
+        String port = context.getEnvironment().getProperty("local.server.port");
+
+        client = HttpClient.newHttpClient();
+        getBooksRequest = HttpRequest
+                .newBuilder(URI.create("http://localhost:" + port + "/books?page=" + page + "&size=" + size))
+                .GET()
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] getBooksPage() throws IOException, InterruptedException {
+
+        HttpResponse<byte[]> response = client.send(getBooksRequest, HttpResponse.BodyHandlers.ofByteArray());
+
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET /books returned " + response.statusCode());
+        }
+
+        return response.body();
+    }
+}
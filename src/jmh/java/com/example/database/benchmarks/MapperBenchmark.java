@@ -0,0 +1,85 @@
+package com.example.database.benchmarks;
+
+import com.example.database.domain.dto.AuthorDto;
+import com.example.database.domain.dto.BookDto;
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import com.example.database.mappers.Mapper;
+import com.example.database.mappers.impl.AuthorMapperImpl;
+import com.example.database.mappers.impl.BookMapperImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Measures the per-call cost of mapping between entities and DTOs. No Spring context is needed because the mappers are
+// plain classes, which keeps the numbers free of proxy and container overhead.
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    private Mapper<Author, AuthorDto> authorMapper;
+
+    private Mapper<Book, BookDto> bookMapper;
+
+    private Author author;
+
+    private AuthorDto authorDto;
+
+    private Book book;
+
+    private BookDto bookDto;
+
+    private List<Book> bookPage;
+
+    @Setup
+    public void setUp() {
+
+        AuthorMapperImpl authorMapperImpl = new AuthorMapperImpl();
+        authorMapper = authorMapperImpl;
+        bookMapper = new BookMapperImpl(authorMapperImpl);
+
+        author = BenchmarkApplication.createAuthor(1);
+        author.setId(1L);
+        book = BenchmarkApplication.createBook(1, author);
+
+        authorDto = authorMapper.mapTo(author);
+        bookDto = bookMapper.mapTo(book);
+
+        bookPage = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            bookPage.add(BenchmarkApplication.createBook(i, author));
+        }
+    }
+
+    @Benchmark
+    public AuthorDto authorMapTo() {
+        return authorMapper.mapTo(author);
+    }
+
+    @Benchmark
+    public Author authorMapFrom() {
+        return authorMapper.mapFrom(authorDto);
+    }
+
+    @Benchmark
+    public BookDto bookMapTo() {
+        return bookMapper.mapTo(book);
+    }
+
+    @Benchmark
+    public Book bookMapFrom() {
+        return bookMapper.mapFrom(bookDto);
+    }
+
+    @Benchmark
+    public List<BookDto> bookMapAll() {
+        return bookMapper.mapAll(bookPage);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.database.benchmarks;
+
+import com.example.database.domain.dto.BookDto;
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import com.example.database.mappers.impl.AuthorMapperImpl;
+import com.example.database.mappers.impl.BookMapperImpl;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Compares JSON with the binary encodings the controllers also negotiate (see ContentNegotiationConfig) on a page of
+// books with nested authors: the time to encode and decode it, and (printed once per trial) the size of the payload.
+// The factories are configured as in ContentNegotiationConfig.
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"20", "2000"})
+    private int size;
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    private List<BookDto> page;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        JsonFactory factory = switch (format) {
+            case "json" -> new JsonFactory();
+            case "cbor" -> new CBORFactory();
+            case "smile" -> SmileFactory.builder().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build();
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+
+        ObjectMapper objectMapper = new ObjectMapper(factory);
+        writer = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, BookDto.class));
+        reader = objectMapper.readerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, BookDto.class));
+
+        BookMapperImpl bookMapper = new BookMapperImpl(new AuthorMapperImpl());
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Author author = BenchmarkApplication.createAuthor(i % 50);
+            author.setId((long) i % 50);
+            books.add(BenchmarkApplication.createBook(i, author));
+        }
+        // As on a real page, several books share an author.
+
+        page = bookMapper.mapAll(books);
+        payload = writer.writeValueAsBytes(page);
+
+        System.out.printf("%n%s payload for %d books: %d bytes%n", format, size, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<BookDto> decode() throws IOException {
+        return reader.readValue(payload);
+    }
+}
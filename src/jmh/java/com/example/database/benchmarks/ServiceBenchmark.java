@@ -0,0 +1,80 @@
+package com.example.database.benchmarks;
+
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import com.example.database.services.AuthorService;
+import com.example.database.services.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Measures the service layer (and therefore the repositories and SQL underneath it) against an embedded database. The
+// page parameter shows how the cost of OFFSET paging grows with page depth, compared to keyset (cursor) paging.
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    @Param({"200"})
+    private int authorCount;
+
+    @Param({"10000"})
+    private int bookCount;
+
+    @Param({"0", "400"})
+    private int page;
+
+    @Param({"20"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+
+    private BookService bookService;
+
+    private AuthorService authorService;
+
+    private String afterIsbn;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        context = BenchmarkApplication.start(WebApplicationType.NONE);
+        BenchmarkApplication.seed(context, authorCount, bookCount);
+
+        bookService = context.getBean(BookService.class);
+        authorService = context.getBean(AuthorService.class);
+
+        afterIsbn = page == 0 ? "" : BenchmarkApplication.createBook(page * size - 1, null).getIsbn();
+        // The synthetic ISBNs sort in creation order, so the last ISBN of the previous page is known up front.
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Book> getBooksPage() {
+        return bookService.getBooks(PageRequest.of(page, size));
+    }
+
+    @Benchmark
+    public Slice<Book> getBooksByCursor() {
+        return bookService.getBooks(afterIsbn, size);
+    }
+
+    @Benchmark
+    public List<Author> getAuthors() {
+        return authorService.getAuthors();
+    }
+}
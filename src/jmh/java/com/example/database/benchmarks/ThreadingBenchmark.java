@@ -0,0 +1,99 @@
+package com.example.database.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Compares request handling on Tomcat's platform threads with virtual threads (and the connection gate in front of the
+// pool), by sending a burst of concurrent requests to GET /books and GET /authors and waiting for all of them. The
+// virtual thread mode needs a Java 21 runtime; on an older one, run -Djmh.args="ThreadingBenchmark -p virtualThreads=false".
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadingBenchmark {
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    @Param({"1000"})
+    private int concurrentRequests;
+
+    @Param({"200"})
+    private int authorCount;
+
+    @Param({"10000"})
+    private int bookCount;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private List<HttpRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need a Java 21 runtime, found " + Runtime.version());
+        }
+        // Spring Boot silently ignores spring.threads.virtual.enabled on older runtimes, which would compare platform
+        // threads with themselves.
+
+        context = BenchmarkApplication.start(
+                WebApplicationType.SERVLET,
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--server.tomcat.accept-count=" + concurrentRequests);
+        BenchmarkApplication.seed(context, authorCount, bookCount);
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        requests = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            String path = i % 2 == 0 ? "/books?page=" + (i % 100) + "&size=20" : "/authors/" + (1 + i % authorCount);
+            requests.add(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build());
+        }
+        // Alternates between a page of books (two queries) and a single author, across different pages and authors.
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int sendConcurrentRequests() {
+
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(requests.size());
+        for (HttpRequest request : requests) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+
+        int ok = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() == 200) {
+                ok++;
+            }
+        }
+
+        if (ok != requests.size()) {
+            throw new IllegalStateException((requests.size() - ok) + " requests did not return 200");
+        }
+
+        return ok;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.database.benchmarks;
+
+import com.example.database.domain.BookPatchStatus;
+import com.example.database.domain.entities.Book;
+import com.example.database.services.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Compares the time per patch of a burst of title patches applied synchronously (one transaction per patch) with the
+// write-behind mode (queued, collapsed per ISBN and written in batches, see BookPatchQueue). The write-behind time
+// includes waiting until every patch of the burst has been written, not just accepted. hotBooks is the number of
+// distinct books the burst patches: with few of them, most patches collapse.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBehindBenchmark {
+
+    @Param({"200"})
+    private int authorCount;
+
+    @Param({"10000"})
+    private int bookCount;
+
+    @Param({"10", "1000"})
+    private int hotBooks;
+
+    @Param({"sync", "write-behind"})
+    private String mode;
+
+    private static final int BURST = 1000;
+
+    private ConfigurableApplicationContext context;
+
+    private BookService bookService;
+
+    private List<String> isbns;
+
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        context = BenchmarkApplication.start(
+                WebApplicationType.NONE,
+                "--books.write-behind.capacity=" + bookCount,
+                "--books.write-behind.flush-interval=10ms");
+        BenchmarkApplication.seed(context, authorCount, bookCount);
+
+        bookService = context.getBean(BookService.class);
+
+        isbns = new ArrayList<>(hotBooks);
+        for (int i = 0; i < hotBooks; i++) {
+            isbns.add(BenchmarkApplication.createBook(i, null).getIsbn());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void patchBurst() throws InterruptedException {
+
+        round++;
+
+        if (mode.equals("sync")) {
+            for (int i = 0; i < BURST; i++) {
+                bookService.patchBook(isbns.get(i % hotBooks), title(i));
+            }
+            return;
+        }
+
+        List<String> tokens = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            tokens.add(bookService.patchBookAsync(isbns.get(i % hotBooks), title(i)).orElseThrow().getToken());
+        }
+
+        for (String token : tokens) {
+            while (bookService.getPatchStatus(token).orElseThrow().getState() == BookPatchStatus.State.QUEUED) {
+                Thread.sleep(1);
+            }
+        }
+        // The patches are written in the order they were queued, so most of these checks find them written already.
+    }
+
+    private Book title(int i) {
+        return Book.builder().title("Patched Title " + round + "-" + i).build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.database.loadtest;
+
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Generates a deterministic synthetic catalog: author i and book i are always the same, so that the workload can pick any
+// author ID in [1, authorCount] and any book index in [0, bookCount) without asking the application first. The authors
+// and books are built with the entity builders (as TestData does), but inserted with plain JDBC batches, since seeding
+// millions of rows through JPA would take longer than the load test itself.
+final class CatalogGenerator {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private CatalogGenerator() {} // private no-arg constructor
+
+    static Author author(long id) {
+        return Author.builder()
+                .id(id)
+                .name("Author " + id)
+                .age(20 + (int) (id % 60))
+                .build();
+    }
+
+    static Book book(long i, long authorCount) {
+        return Book.builder()
+                .isbn(isbn(i))
+                .title("Synthetic Title " + i)
+                .author(author(1 + i % authorCount))
+                .build();
+    }
+
+    static String isbn(long i) {
+        return String.format("978-%d-%04d-%04d-%d", i / 100_000_000, i / 10_000 % 10_000, i % 10_000, i % 10);
+        // Fixed-width groups, so that the ISBNs sort in the same order as the book indexes.
+    }
+
+    static void seed(JdbcTemplate jdbcTemplate, long authorCount, long bookCount) {
+
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+
+        for (long id = 1; id <= authorCount; id++) {
+            Author author = author(id);
+            rows.add(new Object[]{author.getId(), author.getName(), author.getAge()});
+            if (rows.size() == BATCH_SIZE || id == authorCount) {
+                jdbcTemplate.batchUpdate("INSERT INTO authors (id, name, age, version) VALUES (?, ?, ?, 0)", rows);
+                rows.clear();
+            }
+        }
+
+        jdbcTemplate.execute("ALTER SEQUENCE author_id_seq RESTART WITH " + (authorCount + 1_000));
+        // Authors created by the application must not collide with the seeded IDs. The margin covers the block of IDs
+        // that Hibernate's pooled sequence optimizer hands out below each sequence value.
+
+        for (long i = 0; i < bookCount; i++) {
+            Book book = book(i, authorCount);
+            rows.add(new Object[]{book.getIsbn(), book.getTitle(), book.getAuthor().getId()});
+            if (rows.size() == BATCH_SIZE || i == bookCount - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO books (isbn, title, author_id, version) VALUES (?, ?, ?, 0)", rows);
+                rows.clear();
+            }
+            if ((i + 1) % 1_000_000 == 0) {
+                System.out.printf("Seeded %,d of %,d books%n", i + 1, bookCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.database.loadtest;
+
+import com.example.database.DatabaseApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// Boots the application against an in-memory H2 database (in PostgreSQL mode), seeds a synthetic catalog, drives a mixed
+// read/write workload against its HTTP endpoints, and reports throughput and latency percentiles per route. The run
+// fails (exit code 1) if a route misses its service level objective (SLO) in slo.properties.
+//
+// Options (all optional, as --name=value):
+//   authors, books        size of the catalog (default 10000 and 500000)
+//   concurrency           number of client threads (default 64)
+//   warmup, duration      e.g. 30s or 5m (default 10s and 60s)
+//   rate                  target requests per second across all threads (default 0, i.e. as fast as possible)
+//   max-page              highest page requested by GET /books?page= (default 500)
+//   mix.<route>           share of a route in percent, e.g. --mix.getBook=60 (see Route for the keys and defaults)
+//   slo                   location of the SLOs (default classpath:slo.properties)
+//   seed                  random seed, so that two runs send the same sequence of requests (default 42)
+public final class LoadTest {
+
+    private LoadTest() {} // private no-arg constructor
+
+    public static void main(String[] args) throws Exception {
+
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+
+        long authorCount = Long.parseLong(option(options, "authors", "10000"));
+        long bookCount = Long.parseLong(option(options, "books", "500000"));
+        int concurrency = Integer.parseInt(option(options, "concurrency", "64"));
+        Duration warmup = Duration.parse("PT" + option(options, "warmup", "10s"));
+        Duration duration = Duration.parse("PT" + option(options, "duration", "60s"));
+        double rate = Double.parseDouble(option(options, "rate", "0"));
+        int maxPage = Integer.parseInt(option(options, "max-page", "500"));
+        long seed = Long.parseLong(option(options, "seed", "42"));
+
+        Map<Route, Integer> weights = new EnumMap<>(Route.class);
+        for (Route route : Route.values()) {
+            String weight = option(options, "mix." + route.key, String.valueOf(route.defaultWeight));
+            weights.put(route, Integer.parseInt(weight));
+        }
+
+        Properties slo = PropertiesLoaderUtils.loadProperties(
+                new DefaultResourceLoader().getResource(option(options, "slo", "classpath:slo.properties")));
+
+        ConfigurableApplicationContext context = start();
+
+        int exitCode;
+
+        try {
+            System.out.printf("Seeding %,d authors and %,d books%n", authorCount, bookCount);
+            CatalogGenerator.seed(context.getBean(JdbcTemplate.class), authorCount, bookCount);
+
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            Workload workload = new Workload(baseUrl, authorCount, bookCount, maxPage, weights);
+
+            System.out.printf("Running for %s (after a %s warmup) with %d clients%n", duration, warmup, concurrency);
+            workload.run(concurrency, warmup.toNanos(), duration.toNanos(), rate, seed);
+
+            report(workload, duration);
+
+            List<String> violations = checkSlo(workload, slo);
+            violations.forEach(violation -> System.out.println("SLO violated: " + violation));
+
+            exitCode = violations.isEmpty() ? 0 : 1;
+        } finally {
+            context.close();
+        }
+
+        System.exit(exitCode);
+    }
+
+    private static String option(SimpleCommandLinePropertySource options, String name, String defaultValue) {
+        return options.containsProperty(name) ? options.getProperty(name) : defaultValue;
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(DatabaseApplication.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=password",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.r2dbc.url=r2dbc:h2:mem:///loadtest?options=MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                "--spring.r2dbc.username=sa",
+                "--spring.r2dbc.password=password",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn",
+                "--server.port=0");
+        // Command line arguments take precedence over any application.properties on the classpath (as in the
+        // benchmarks), so the load test never points at the PostgreSQL instance configured for the application.
+    }
+
+    // Prints one line per route and writes the full percentile distribution of each route (in milliseconds) to
+    // target/loadtest/<route>.hgrm, which can be plotted with the HdrHistogram plotter.
+    private static void report(Workload workload, Duration duration) throws IOException {
+
+        Path directory = Files.createDirectories(Path.of("target", "loadtest"));
+
+        System.out.printf("%-22s %10s %10s %9s %9s %9s %9s %9s %8s%n",
+                "Route", "Requests", "Req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "Errors");
+
+        for (Route route : Route.values()) {
+
+            Histogram histogram = workload.histograms.get(route);
+
+            System.out.printf("%-22s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %8d%n",
+                    route.label,
+                    histogram.getTotalCount(),
+                    histogram.getTotalCount() / (duration.toMillis() / 1000.0),
+                    millis(histogram, 50),
+                    millis(histogram, 90),
+                    millis(histogram, 99),
+                    millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1000.0,
+                    workload.errors.get(route).get());
+
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(route.key + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    // slo.<route>.p99 is the highest acceptable p99 latency of a route in milliseconds, and slo.max-error-rate the
+    // highest acceptable share of failed requests (status 4xx/5xx or no response) across all routes.
+    private static List<String> checkSlo(Workload workload, Properties slo) {
+
+        List<String> violations = new ArrayList<>();
+
+        long requests = 0;
+        long errors = 0;
+
+        for (Route route : Route.values()) {
+
+            Histogram histogram = workload.histograms.get(route);
+            requests += histogram.getTotalCount();
+            errors += workload.errors.get(route).get();
+
+            String p99 = slo.getProperty("slo." + route.key + ".p99");
+            if (p99 != null && histogram.getTotalCount() > 0 && millis(histogram, 99) > Double.parseDouble(p99)) {
+                violations.add(String.format("%s p99 %.2f ms > %s ms", route.label, millis(histogram, 99), p99));
+            }
+        }
+
+        String maxErrorRate = slo.getProperty("slo.max-error-rate");
+        double errorRate = requests == 0 ? 0 : (double) errors / requests;
+        if (maxErrorRate != null && errorRate > Double.parseDouble(maxErrorRate)) {
+            violations.add(String.format("error rate %.4f > %s", errorRate, maxErrorRate));
+        }
+
+        return violations;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.database.loadtest;
+
+// The routes of the mixed workload, with their default share of the requests (in percent). The key names the route in
+// the options (--mix.<key>=...) and in slo.properties (slo.<key>.p99=...).
+enum Route {
+
+    GET_BOOK("getBook", "GET /books/{isbn}", 40),
+    GET_BOOKS("getBooks", "GET /books", 10),
+    GET_BOOKS_BY_CURSOR("getBooksByCursor", "GET /books?after=", 10),
+    GET_AUTHOR("getAuthor", "GET /authors/{id}", 15),
+    PUT_BOOK("putBook", "PUT /books/{isbn}", 10),
+    PATCH_BOOK("patchBook", "PATCH /books/{isbn}", 10),
+    PATCH_AUTHOR("patchAuthor", "PATCH /authors/{id}", 5);
+
+    final String key;
+
+    final String label;
+
+    final int defaultWeight;
+
+    Route(String key, String label, int defaultWeight) {
+        this.key = key;
+        this.label = label;
+        this.defaultWeight = defaultWeight;
+    }
+}
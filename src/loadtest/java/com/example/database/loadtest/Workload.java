@@ -0,0 +1,188 @@
+package com.example.database.loadtest;
+
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Drives the mixed read/write workload from a fixed number of client threads, and records the latency of every request
+// per route in an HdrHistogram (in microseconds). By default each thread sends its next request as soon as the previous
+// one has completed (closed loop). With a target rate, each thread sends on a fixed schedule instead and latency is
+// measured from the scheduled start, so that a stalled server is not hidden by the clients waiting for it (coordinated
+// omission).
+class Workload {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private static final String JSON = "application/json";
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String baseUrl;
+
+    private final long authorCount;
+
+    private final long bookCount;
+
+    private final int maxPage;
+
+    private final Route[] schedule;
+    // One entry per percent of the mix, so that picking a random entry picks a route with the configured weight.
+
+    final Map<Route, Histogram> histograms = new EnumMap<>(Route.class);
+
+    final Map<Route, AtomicLong> errors = new EnumMap<>(Route.class);
+
+    Workload(String baseUrl, long authorCount, long bookCount, int maxPage, Map<Route, Integer> weights) {
+
+        this.baseUrl = baseUrl;
+        this.authorCount = authorCount;
+        this.bookCount = bookCount;
+        this.maxPage = maxPage;
+
+        this.schedule = weights.entrySet().stream()
+                .flatMap(entry -> Stream.generate(entry::getKey).limit(entry.getValue()))
+                .toArray(Route[]::new);
+
+        for (Route route : Route.values()) {
+            histograms.put(route, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+            errors.put(route, new AtomicLong());
+        }
+    }
+
+    // Runs the workload for warmup + duration. Only the requests that start after the warmup are recorded.
+    void run(int concurrency, long warmupNanos, long durationNanos, double rate, long seed) throws InterruptedException {
+
+        long start = System.nanoTime();
+        long recordFrom = start + warmupNanos;
+        long end = recordFrom + durationNanos;
+
+        long interval = rate > 0 ? (long) (concurrency * 1e9 / rate) : 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+
+        for (int worker = 0; worker < concurrency; worker++) {
+
+            SplittableRandom random = new SplittableRandom(seed + worker);
+            long offset = interval * worker / concurrency;
+            // Staggers the schedules of the threads so that the requests are spread evenly over each interval.
+
+            executor.execute(() -> {
+
+                Client state = new Client();
+                long next = start + offset;
+
+                while (true) {
+
+                    if (interval > 0) {
+                        long wait = next - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                    }
+
+                    long sent = interval > 0 ? next : System.nanoTime();
+                    if (sent >= end) {
+                        break;
+                    }
+
+                    Route route = schedule[random.nextInt(schedule.length)];
+                    boolean ok = send(route, random, state);
+                    long latencyMicros = (System.nanoTime() - sent) / 1_000;
+
+                    if (sent >= recordFrom) {
+                        histograms.get(route).recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+                        if (!ok) {
+                            errors.get(route).incrementAndGet();
+                        }
+                    }
+
+                    next += interval;
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(end - start + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS);
+    }
+
+    // Per-thread client state: the cursor of the book listing that this client is paging through.
+    private static class Client {
+        String cursor = "";
+    }
+
+    private boolean send(Route route, SplittableRandom random, Client state) {
+
+        try {
+            HttpResponse<String> response = client.send(
+                    request(route, random, state), HttpResponse.BodyHandlers.ofString());
+
+            if (route == Route.GET_BOOKS_BY_CURSOR && response.statusCode() == 200) {
+                JsonNode next = objectMapper.readTree(response.body()).get("next");
+                state.cursor = next == null || next.isNull() ? "" : next.asText();
+                // Clients follow the cursors they are given, starting over at the end of the catalog.
+            }
+
+            return response.statusCode() < 400;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private HttpRequest request(Route route, SplittableRandom random, Client state) {
+
+        long bookIndex = random.nextLong(bookCount);
+        long authorId = 1 + random.nextLong(authorCount);
+
+        return switch (route) {
+            case GET_BOOK -> get("/books/" + CatalogGenerator.isbn(bookIndex));
+            case GET_BOOKS -> get("/books?page=" + random.nextInt(maxPage) + "&size=20");
+            case GET_BOOKS_BY_CURSOR -> get("/books?size=20&after=" + state.cursor);
+            case GET_AUTHOR -> get("/authors/" + authorId);
+            case PUT_BOOK -> {
+                Book book = CatalogGenerator.book(bookIndex, authorCount);
+                Author author = book.getAuthor();
+                yield withBody("PUT", "/books/" + book.getIsbn(), String.format(
+                        "{\"isbn\":\"%s\",\"title\":\"%s\",\"author\":{\"id\":%d,\"name\":\"%s\",\"age\":%d}}",
+                        book.getIsbn(), book.getTitle(), author.getId(), author.getName(), author.getAge()));
+                // Rewrites the book (and its author) with the values it was seeded with, so the catalog does not drift.
+            }
+            case PATCH_BOOK -> withBody("PATCH", "/books/" + CatalogGenerator.isbn(bookIndex),
+                    "{\"title\":\"Patched Title " + random.nextInt(1_000) + "\"}");
+            case PATCH_AUTHOR -> withBody("PATCH", "/authors/" + authorId,
+                    "{\"age\":" + (20 + random.nextInt(60)) + "}");
+        };
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest withBody(String method, String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", JSON)
+                .method(method, HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+}
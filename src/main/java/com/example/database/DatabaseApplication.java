@@ -2,10 +2,11 @@ package com.example.database;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
 
 import javax.sql.DataSource;
 
-@SpringBootApplication
+@SpringBootApplication(exclude = R2dbcTransactionManagerAutoConfiguration.class)
 public class DatabaseApplication {
 
     public static void main(String[] args) {
@@ -13,3 +14,6 @@ public class DatabaseApplication {
     }
 
 }
+
+// The R2DBC transaction manager is excluded because the reactive reads do not need transactions, and a second
+// transaction manager would make Spring Boot back off from creating the JPA one used by @Transactional.
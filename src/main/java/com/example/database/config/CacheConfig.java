@@ -0,0 +1,43 @@
+package com.example.database.config;
+
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Enables the @Cacheable and @CacheEvict annotations on the services. The caches are Caffeine caches created from the
+// spring.cache.* properties. Caffeine evicts by size using W-TinyLFU (which keeps the popular entries of a skewed
+// workload) and by age; recordStats publishes hit, miss and eviction counts as cache.* metrics.
+//
+// The cache manager is declared here, rather than by Spring Boot, to make it transaction-aware: an eviction (or put)
+// made inside a transaction only happens once the transaction commits, so a concurrent reader cannot cache the old row
+// again between the eviction and the commit. (CaffeineCacheManager has no transactionAware setting of its own.)
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+
+    public static final String BOOKS = "books";
+
+    public static final String BOOK_EXISTS = "bookExists";
+
+    public static final String AUTHORS = "authors";
+
+    public static final String AUTHOR_EXISTS = "authorExists";
+
+    @Bean
+    public CacheManager cacheManager(CacheProperties properties) {
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        if (properties.getCaffeine().getSpec() != null) {
+            cacheManager.setCacheSpecification(properties.getCaffeine().getSpec());
+        }
+        cacheManager.setCacheNames(properties.getCacheNames());
+
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
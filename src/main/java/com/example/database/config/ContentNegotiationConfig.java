@@ -0,0 +1,34 @@
+package com.example.database.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+// Besides JSON, the controllers read and write CBOR ("application/cbor") and Smile ("application/x-jackson-smile"),
+// which are binary encodings of the same data model. A client selects one with the Accept header for responses and the
+// Content-Type header for requests. They are smaller than JSON and much cheaper to parse, since numbers are not written
+// as text and (in Smile) repeated field names and short strings are written once and then referenced. See
+// SerializationBenchmark for the numbers.
+@Configuration
+public class ContentNegotiationConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+    // The builder is the one Spring Boot configures from the spring.jackson.* properties (a new instance per injection
+    // point), so the binary encodings serialise exactly the same fields as JSON does.
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder
+                .factory(SmileFactory.builder().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build())
+                .build());
+    }
+    // Sharing string values (off by default) lets a page of books by the same author write its name once.
+}
@@ -0,0 +1,84 @@
+package com.example.database.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Spring Boot only auto-configures the JDBC DataSource when there is no R2DBC ConnectionFactory, assuming that an
+// application uses one or the other. This application uses both (JPA for the writes, R2DBC for the reactive reads), so
+// the DataSource is declared here, from the same spring.datasource.* (and spring.datasource.hikari.*) properties.
+//
+// The DataSource used by JPA routes each transaction: read-only transactions (@Transactional(readOnly = true)) to the
+// read replicas, if any are configured (see ReplicaProperties), and all others to the primary.
+@Configuration
+@EnableConfigurationProperties({DataSourceProperties.class, ReplicaProperties.class})
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "datasource.replicas[0].url")
+    public ReplicaDataSource replicaDataSource(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource,
+            ReplicaProperties properties,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+
+        for (ReplicaProperties.Replica replica : properties.getReplicas()) {
+
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword())
+                    .build();
+            dataSource.setPoolName("replica-" + (replicas.size() + 1));
+            dataSource.setReadOnly(true);
+            meterRegistry.ifAvailable(dataSource::setMetricRegistry);
+            // The replica pools are not beans, so they are registered for the hikaricp.* metrics here.
+
+            replicas.add(dataSource);
+        }
+
+        return new ReplicaDataSource(
+                replicas,
+                primaryDataSource,
+                properties.getMaxReplicaLag(),
+                properties.getReplicaHealthCheckInterval());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource,
+            ObjectProvider<ReplicaDataSource> replicaDataSource) {
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        replicaDataSource.ifAvailable(dataSource::setReadOnlyDataSource);
+
+        return dataSource;
+    }
+    // The proxy only borrows a connection when the first statement runs, by which time the transaction has marked the
+    // connection as read-only or not, and then borrows it from the replicas or the primary accordingly. (Hibernate asks
+    // for the connection as soon as the transaction begins.) As a side effect, a transaction that never reaches the
+    // database, such as a cached read, does not borrow a connection at all.
+}
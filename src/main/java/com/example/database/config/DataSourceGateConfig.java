@@ -0,0 +1,38 @@
+package com.example.database.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// With request handling on virtual threads (spring.threads.virtual.enabled), Tomcat no longer caps the number of
+// concurrent requests at its 200 platform threads, so thousands of requests can reach the connection pool at once. The
+// gate (see GatedDataSource) queues them cheaply in front of the pool, with as many permits as the pool has connections,
+// so only threads that will get a connection straight away ever enter the pool and the JDBC driver.
+@Configuration
+@ConditionalOnProperty(name = "datasource.gate.enabled", havingValue = "true")
+public class DataSourceGateConfig {
+
+    private static final int HIKARI_DEFAULT_POOL_SIZE = 10;
+    // Hikari only fills in its default pool size when the pool starts, which is after the DataSource has been wrapped.
+
+    @Bean
+    public static BeanPostProcessor dataSourceGatePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    int poolSize = dataSource.getMaximumPoolSize() > 0
+                            ? dataSource.getMaximumPoolSize()
+                            : HIKARI_DEFAULT_POOL_SIZE;
+
+                    return new GatedDataSource(dataSource, poolSize, dataSource.getConnectionTimeout());
+                }
+                return bean;
+            }
+        };
+    }
+    // The DataSource created by Spring Boot is wrapped rather than replaced, so the spring.datasource.hikari.* settings
+    // still apply. The method is static because a BeanPostProcessor must be created before the other beans.
+}
@@ -0,0 +1,90 @@
+package com.example.database.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A DataSource that lets at most a fixed number of threads hold a connection at a time. The others wait on a fair (i.e.
+// first come, first served) semaphore, which parks a virtual thread without pinning its carrier thread. A permit is taken
+// before a connection is borrowed from the pool, and given back when the connection is closed (i.e. returned).
+public class GatedDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+
+    private final long timeoutMillis;
+
+    public GatedDataSource(DataSource dataSource, int permits, long timeoutMillis) {
+        super(dataSource);
+        this.permits = new Semaphore(permits, true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        acquire();
+
+        try {
+            return gate(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+
+        acquire();
+
+        try {
+            return gate(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Connection is not available, request timed out after " + timeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+        // Fails the same way (and after the same timeout) as the connection pool itself would.
+    }
+
+    private Connection gate(Connection connection) {
+
+        AtomicBoolean released = new AtomicBoolean();
+
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+        // The proxy forwards every call to the pooled connection, and gives the permit back on the first close only,
+        // since closing a connection twice is allowed.
+    }
+}
@@ -1,17 +1,21 @@
 package com.example.database.config;
 
-import org.modelmapper.ModelMapper;
-import org.modelmapper.convention.MatchingStrategies;
-import org.modelmapper.spi.MatchingStrategy;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
 
-@Configuration
-public class MapperConfig {
+// Shared configuration for the MapStruct mappers. MapStruct is an annotation processor, so the mapper implementations
+// are generated at compile time as plain getter/setter (or builder) calls, with no reflection and no per-call type-map
+// lookups at runtime. The generated classes are Spring beans placed in the mappers.impl package (e.g. AuthorMapper is
+// implemented by mappers.impl.AuthorMapperImpl).
 
-    // The ModelMapper type is from the Model Mapper library.
-    @Bean
-    public ModelMapper modelMapper() {
-        return new ModelMapper();
-    }
+// unmappedTargetPolicy = ERROR fails the build if a DTO or entity gains a field that no mapping fills in, instead of
+// silently leaving it null.
+
+@org.mapstruct.MapperConfig(
+        componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        implementationPackage = "<PACKAGE_NAME>.impl",
+        unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface MapperConfig {
 }
@@ -0,0 +1,34 @@
+package com.example.database.config;
+
+import com.example.database.metrics.StatementCounter;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Metrics per layer, published on /actuator/prometheus:
+// - http.server.requests times each request (Spring Boot), and http.server.requests.statements counts its SQL statements
+//   (see StatementMetricsFilter).
+// - service.invocations times each service method annotated (or in a class annotated) with @Timed.
+// - spring.data.repository.invocations times each repository method (Spring Boot), including the custom fragments.
+// - hibernate.* publishes the Hibernate statistics (queries, entity loads, second-level cache hits) and hikaricp.*
+//   the connection pool, including the time spent waiting for a connection (hikaricp.connections.acquire).
+// The histograms (and therefore the percentiles) are enabled with management.metrics.distribution.* properties.
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+    // Micrometer only acts on @Timed through this aspect; without it, the annotation does nothing.
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCounterCustomizer(StatementCounter statementCounter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementCounter);
+    }
+    // Passing the instance (rather than its class name in application.properties) lets Hibernate use the Spring bean
+    // that StatementMetricsFilter reads from.
+}
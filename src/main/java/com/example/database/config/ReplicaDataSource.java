@@ -0,0 +1,144 @@
+package com.example.database.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands out connections to the read replicas in turn (round-robin), skipping the replicas that are down or lagging too
+// far behind the primary. When no replica is usable, the connection comes from the primary instead, so reads degrade to
+// the primary rather than fail. The replicas are checked in the background every health check interval.
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    // On a PostgreSQL standby: 0 when all received WAL has been replayed, otherwise the age of the last replayed
+    // transaction. Comparing the positions first keeps a replica of an idle primary from looking like it is lagging.
+    // That comparison only holds while WAL is still being received, so a standby whose WAL receiver is not streaming
+    // (e.g. disconnected from the primary) returns NULL, i.e. an unknown lag. Without the pg_read_all_stats role the
+    // status is hidden, and only whether the WAL receiver runs at all is checked. On a primary (or any database that is
+    // not a standby), the lag is 0.
+    private static final String POSTGRESQL_LAG_SECONDS = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN NOT EXISTS (
+                    SELECT 1 FROM pg_stat_wal_receiver WHERE COALESCE(status, 'streaming') = 'streaming') THEN NULL
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+            END""";
+
+    private final List<Replica> replicas;
+
+    private final DataSource primary;
+
+    private final Duration maxLag;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final ScheduledExecutorService healthChecks;
+
+    public ReplicaDataSource(
+            List<HikariDataSource> replicas,
+            DataSource primary,
+            Duration maxLag,
+            Duration healthCheckInterval) {
+
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.primary = primary;
+        this.maxLag = maxLag;
+
+        this.healthChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.healthChecks.scheduleWithFixedDelay(
+                this::checkHealth,
+                0,
+                healthCheckInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        // The first check runs in the background right away, so that a replica that cannot be reached does not hold up
+        // the start of the application for its connection timeout. Until a replica has passed a check, it is not used,
+        // and its reads go to the primary.
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        int start = next.getAndIncrement();
+
+        for (int i = 0; i < replicas.size(); i++) {
+
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+
+            if (replica.healthy) {
+                try {
+                    return replica.dataSource.getConnection();
+                } catch (SQLException e) {
+                    replica.healthy = false;
+                    // Skipped until the next health check finds it usable again.
+                }
+            }
+        }
+
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replicas use the credentials they are configured with");
+    }
+
+    private void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                replica.healthy = lag(connection).compareTo(maxLag) <= 0;
+            } catch (SQLException | RuntimeException e) {
+                replica.healthy = false;
+            }
+        }
+    }
+
+    private static Duration lag(Connection connection) throws SQLException {
+
+        if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+            return Duration.ZERO;
+        }
+        // Other databases (i.e. H2 in the tests) have no replication to measure, so only the connection is checked.
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(POSTGRESQL_LAG_SECONDS)) {
+            resultSet.next();
+            double seconds = resultSet.getDouble(1);
+            return resultSet.wasNull() ? ChronoUnit.FOREVER.getDuration() : Duration.ofMillis((long) (seconds * 1000));
+            // An unknown lag never passes the health check.
+        }
+    }
+
+    @Override
+    public void close() {
+        healthChecks.shutdownNow();
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private static class Replica {
+
+        private final HikariDataSource dataSource;
+
+        private volatile boolean healthy;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
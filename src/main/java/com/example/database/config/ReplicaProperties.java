@@ -0,0 +1,32 @@
+package com.example.database.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// The read replicas (datasource.replicas[0].url=..., and so on) that read-only transactions are routed to, see
+// DataSourceConfig. Without replicas, every transaction uses the primary (spring.datasource.*).
+@Data
+@ConfigurationProperties(prefix = "datasource")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    private Duration maxReplicaLag = Duration.ofSeconds(10);
+    // A replica that is further behind the primary than this is not used until it has caught up.
+
+    private Duration replicaHealthCheckInterval = Duration.ofSeconds(5);
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
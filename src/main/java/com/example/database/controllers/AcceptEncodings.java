@@ -0,0 +1,60 @@
+package com.example.database.controllers;
+
+import java.util.Locale;
+
+// Parses an Accept-Encoding header (RFC 9110), e.g. "gzip;q=0.8, deflate", to find out whether a content coding is
+// acceptable. A coding is acceptable when it is listed with a q-value above 0, or when it is not listed and the
+// wildcard (*) is, with a q-value above 0. A q-value of 0 (e.g. "gzip;q=0") refuses the coding.
+final class AcceptEncodings {
+
+    private AcceptEncodings() {} // private no-arg constructor
+
+    static boolean accepts(String acceptEncoding, String coding) {
+
+        Double codingQuality = null;
+        Double wildcardQuality = null;
+
+        for (String entry : acceptEncoding.split(",")) {
+
+            String[] parts = entry.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            double quality = quality(parts);
+
+            if (name.equals(coding) || name.equals("x-" + coding)) {
+                codingQuality = codingQuality == null ? quality : Math.max(codingQuality, quality);
+            } else if (name.equals("*")) {
+                wildcardQuality = quality;
+            }
+        }
+
+        if (codingQuality != null) {
+            return codingQuality > 0;
+        }
+
+        return wildcardQuality != null && wildcardQuality > 0;
+    }
+
+    // The q parameter of an entry, 1 when it has none. A q-value that cannot be read counts as 0, i.e. not acceptable.
+    private static double quality(String[] parts) {
+
+        for (int i = 1; i < parts.length; i++) {
+
+            String parameter = parts[i].trim();
+
+            if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+}
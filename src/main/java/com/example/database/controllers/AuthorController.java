@@ -1,38 +1,69 @@
 package com.example.database.controllers;
 
 import com.example.database.domain.dto.AuthorDto;
+import com.example.database.domain.dto.BookDto;
+import com.example.database.domain.dto.CursorPageDto;
 import com.example.database.domain.entities.Author;
+import com.example.database.domain.projections.BookTitle;
 import com.example.database.mappers.Mapper;
 import com.example.database.services.AuthorService;
+import com.example.database.services.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
-
-// +------------------------------------------------+
-// | Method | Route         | Function              |
-// +------------------------------------------------+
-// | POST   | /authors      | Create author         |
-// | GET    | /authors/{id} | Read one author       |
-// | GET    | /authors      | Read many authors     |
-// | PUT    | /authors/{id} | Update author         |
-// | PATCH  | /authors/{id} | Update partial author |
-// | DELETE | /authors/{id} | Delete author         |
-// +------------------------------------------------+
+import java.util.Set;
+
+// +------------------------------------------------------+
+// | Method | Route               | Function              |
+// +------------------------------------------------------+
+// | POST   | /authors            | Create author         |
+// | GET    | /authors/{id}       | Read one author       |
+// | GET    | /authors/{id}/books | Read author's books   |
+// | GET    | /authors            | Read many authors     |
+// | GET    | /authors (NDJSON)   | Stream many authors   |
+// | GET    | /authors?fields     | Read some fields      |
+// | PUT    | /authors/{id}       | Update author         |
+// | PATCH  | /authors/{id}       | Update partial author |
+// | DELETE | /authors/{id}       | Delete author         |
+// +------------------------------------------------------+
 
 @RestController
 public class AuthorController {
 
     private AuthorService authorService;
 
+    private BookService bookService;
+
     private Mapper<Author, AuthorDto> authorMapper;
 
-    public AuthorController(AuthorService authorService, Mapper<Author, AuthorDto> authorMapper) {
+    private ObjectMapper objectMapper;
+
+    private static final List<String> FIELDS = List.of("id", "name", "age");
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 2000;
+
+    public AuthorController(
+            AuthorService authorService,
+            BookService bookService,
+            Mapper<Author, AuthorDto> authorMapper,
+            ObjectMapper objectMapper) {
         this.authorService = authorService;
+        this.bookService = bookService;
         this.authorMapper = authorMapper;
+        this.objectMapper = objectMapper;
     }
 
     // Note that AuthorDto (used in controllers) is used here instead of Author (used in services). ResponseEntity
@@ -53,23 +84,118 @@ public class AuthorController {
 
         List<Author> authors = authorService.getAuthors();
 
-        return authors
-                .stream()
-                .map(authorMapper::mapTo) // instance method reference
-                .collect(Collectors.toList());
+        return authorMapper.mapAll(authors);
+    }
+
+    @GetMapping(path = "/authors", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAuthorsWithFields(@RequestParam("fields") String fields) {
+
+        Optional<Set<String>> parsedFields = Fields.parse(fields, FIELDS);
+
+        if (parsedFields.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        return new ResponseEntity<>(authorService.getAuthors(parsedFields.get()), HttpStatus.OK);
+    }
+    // Sparse fieldset mode (e.g. /authors?fields=id,name), as for books: only the requested columns are selected.
+
+    @GetMapping(path = "/authors", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAuthors() {
+
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter writer = objectMapper.writerFor(AuthorDto.class)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+
+                authorService.streamAuthors(author -> {
+                    try {
+                        writer.write(authorMapper.mapTo(author));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
+    // Requested with "Accept: application/x-ndjson", the authors are written one JSON object per line while they are
+    // read from the database, instead of being collected into lists first, so memory use does not grow with the number
+    // of authors. StreamingResponseBody runs on a separate (async) thread after the controller method has returned.
 
     @GetMapping(path = "/authors/{id}")
-    public ResponseEntity<AuthorDto> getAuthor(@PathVariable("id") Long id) {
+    public ResponseEntity<AuthorDto> getAuthor(@PathVariable("id") Long id, WebRequest request) {
+
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+
+            Optional<String> eTag = authorService.getAuthorVersion(id).map(ETags::of);
+
+            if (eTag.isPresent() && request.checkNotModified(eTag.get())) {
+                return null;
+            }
+        }
+        // Conditional GET, as for books: a 304 (Not Modified) only costs a lookup of the row version.
 
         Optional<Author> author = authorService.getAuthor(id);
 
         return author
-                .map(entity -> new ResponseEntity<>(authorMapper.mapTo(entity), HttpStatus.OK))
+                .map(entity -> ResponseEntity.ok().eTag(ETags.of(entity)).body(authorMapper.mapTo(entity)))
                 .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
         // The map and orElse methods are available with the Optional object.
     }
 
+    @GetMapping(path = "/authors/{id}/books")
+    public ResponseEntity<CursorPageDto<BookDto>> getAuthorBooks(
+            @PathVariable("id") Long id,
+            @RequestParam(name = "after", defaultValue = "") String after,
+            @RequestParam(name = "size", defaultValue = "20") int size) {
+
+        Optional<String> afterIsbn = after.isEmpty() ? Optional.of("") : Cursors.decode(after);
+
+        if (afterIsbn.isEmpty() || size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        Optional<Author> author = authorService.getAuthor(id);
+
+        if (author.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        AuthorDto authorDto = authorMapper.mapTo(author.get());
+
+        Slice<BookTitle> books = bookService.getBooksByAuthor(id, afterIsbn.get(), size);
+
+        List<BookDto> content = books.getContent()
+                .stream()
+                .map(book -> BookDto.builder().isbn(book.getIsbn()).title(book.getTitle()).author(authorDto).build())
+                .toList();
+
+        String next = books.hasNext() ? Cursors.encode(content.get(size - 1).getIsbn()) : null;
+
+        return new ResponseEntity<>(new CursorPageDto<>(content, next), HttpStatus.OK);
+    }
+    // Keyset pagination over the books of one author, in ISBN order and with the same cursors as GET /books?after=. The
+    // author is read once (usually from the cache) rather than with every book, and the books themselves are one range
+    // scan of the (author_id, isbn) index.
+
+    @GetMapping(path = "/authors/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getAuthorWithFields(
+            @PathVariable("id") Long id,
+            @RequestParam("fields") String fields) {
+
+        Optional<Set<String>> parsedFields = Fields.parse(fields, FIELDS);
+
+        if (parsedFields.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        return authorService.getAuthor(id, parsedFields.get())
+                .map(author -> new ResponseEntity<>(author, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
     @PutMapping(path = "/authors/{id}")
     public ResponseEntity<AuthorDto> updateAuthor(
             @PathVariable("id") Long id,
@@ -91,15 +217,14 @@ public class AuthorController {
             @PathVariable("id") Long id,
             @RequestBody AuthorDto authorDto) {
 
-        if (!authorService.isPresent(id)) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-
         Author author = authorMapper.mapFrom(authorDto);
 
-        Author patchedAuthor = authorService.patchAuthor(id, author);
+        Optional<Author> patchedAuthor = authorService.patchAuthor(id, author);
+        // No separate existence check is needed: the patch reports a missing author by returning an empty Optional.
 
-        return new ResponseEntity<>(authorMapper.mapTo(patchedAuthor), HttpStatus.OK);
+        return patchedAuthor
+                .map(entity -> new ResponseEntity<>(authorMapper.mapTo(entity), HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     @DeleteMapping(path = "/authors/{id}")
@@ -1,42 +1,93 @@
 package com.example.database.controllers;
 
+import com.example.database.domain.BookPatchStatus;
+import com.example.database.domain.ImportReport;
+import com.example.database.domain.UpsertStatus;
 import com.example.database.domain.dto.AuthorDto;
 import com.example.database.domain.dto.BookDto;
+import com.example.database.domain.dto.CursorPageDto;
 import com.example.database.domain.entities.Author;
 import com.example.database.domain.entities.Book;
 import com.example.database.mappers.Mapper;
+import com.example.database.services.BookImportService;
 import com.example.database.services.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
-// +----------------------------------------------+
-// | Method | Route         | Function            |
-// +----------------------------------------------+
-// | PUT    | /books/{isbn} | Create book         |
-// | GET    | /books/{isbn} | Read one book       |
-// | GET    | /books        | Read many books     |
-// | PUT    | /books/{isbn} | Update book         |
-// | PATCH  | /books/{isbn} | Update partial book |
-// | DELETE | /books/{isbn} | Delete book         |
-// +----------------------------------------------+
+// +----------------------------------------------------------------+
+// | Method | Route                  | Function                     |
+// +----------------------------------------------------------------+
+// | PUT    | /books/{isbn}          | Create book                  |
+// | PUT    | /books                 | Create or update many books  |
+// | POST   | /books/import          | Import books (CSV or NDJSON) |
+// | GET    | /books/{isbn}          | Read one book                |
+// | GET    | /books                 | Read many books              |
+// | GET    | /books?count=          | Read many books (count mode) |
+// | GET    | /books?after=          | Read many books by cursor    |
+// | GET    | /books?fields          | Read some fields of books    |
+// | GET    | /books/export          | Export all books             |
+// | GET    | /books/search          | Search books by title        |
+// | PUT    | /books/{isbn}          | Update book                  |
+// | PATCH  | /books/{isbn}          | Update partial book          |
+// | GET    | /books/patches/{token} | Read asynchronous patch      |
+// | DELETE | /books/{isbn}          | Delete book                  |
+// +----------------------------------------------------------------+
 
 @RestController
 public class BookController {
 
     private BookService bookService;
 
+    private BookImportService bookImportService;
+
     private Mapper<Book, BookDto> bookMapper;
 
-    public BookController(BookService bookService, Mapper<Book, BookDto> bookMapper) {
+    private ObjectMapper objectMapper;
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 2000;
+
+    private static final int MAX_BATCH_SIZE = 10_000;
+
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+
+    private static final List<String> FIELDS = List.of("isbn", "title", "author.id", "author.name", "author.age");
+
+    public BookController(
+            BookService bookService,
+            BookImportService bookImportService,
+            Mapper<Book, BookDto> bookMapper,
+            ObjectMapper objectMapper) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
         this.bookMapper = bookMapper;
+        this.objectMapper = objectMapper;
     }
 
     @PutMapping(path = "/books/{isbn}")
@@ -46,39 +97,262 @@ public class BookController {
 
         Book book = bookMapper.mapFrom(bookDto);
 
-        boolean bookExists = bookService.isPresent(isbn);
-        // The bookExists boolean must be performed here and not in the if-else statement because otherwise the book
-        // would have been created (see below) and the response status code will always be 200 for updated.
+        if (bookDto.getAuthorId() != null) {
+            return createUpdateBookWithAuthorId(isbn, book, bookDto.getAuthorId(), bookDto.getAuthor() != null);
+        }
 
-        Book createdBook = bookService.createUpdateBook(isbn, book);
-        // Regardless of whether the book exists in the database, the createBook method should be called because it
-        // serves to create or update a book. The only difference is the response status code, with 201 for created and
-        // 200 for updated.
+        UpsertStatus status = bookService.upsertBook(isbn, book);
+        // The book is created or updated by a single upsert statement, which also tells whether the row was inserted or
+        // updated. Checking for existence first would cost an extra query and could race with a concurrent write. The
+        // only difference is the response status code, with 201 for created and 200 for updated.
 
-        if (!bookExists) {
-            return new ResponseEntity<>(bookMapper.mapTo(createdBook), HttpStatus.CREATED);
+        if (status == UpsertStatus.CREATED) {
+            return new ResponseEntity<>(bookMapper.mapTo(book), HttpStatus.CREATED);
         } else {
-            return new ResponseEntity<>(bookMapper.mapTo(createdBook), HttpStatus.OK);
+            return new ResponseEntity<>(bookMapper.mapTo(book), HttpStatus.OK);
+        }
+    }
+
+    // Reference mode, selected by an authorId (e.g. {"title": "...", "authorId": 1}) instead of an embedded author: the
+    // book is linked to the existing author without reading or writing it, so the write only touches the books table.
+    // The response therefore carries the ID of the author only. An author ID that does not exist is a 400 (Bad Request).
+    private ResponseEntity<BookDto> createUpdateBookWithAuthorId(
+            String isbn,
+            Book book,
+            Long authorId,
+            boolean authorEmbedded) {
+
+        if (authorEmbedded) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
+        // A request cannot both link an author and embed one.
+
+        UpsertStatus status;
+        try {
+            status = bookService.upsertBook(isbn, book, authorId);
+        } catch (DataIntegrityViolationException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        BookDto bookDto = BookDto.builder()
+                .isbn(isbn)
+                .title(book.getTitle())
+                .author(AuthorDto.builder().id(authorId).build())
+                .build();
+
+        return new ResponseEntity<>(bookDto, status == UpsertStatus.CREATED ? HttpStatus.CREATED : HttpStatus.OK);
+    }
+
+    @PutMapping(path = "/books")
+    public ResponseEntity<Map<String, UpsertStatus>> createUpdateBooks(@RequestBody List<BookDto> bookDtos) {
+
+        if (bookDtos.size() > MAX_BATCH_SIZE) {
+            return new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        if (bookDtos.stream().anyMatch(bookDto -> bookDto.getIsbn() == null || bookDto.getIsbn().isBlank())) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        // Unlike PUT /books/{isbn}, the ISBN of each book can only come from the request body.
+
+        List<Book> books = bookDtos
+                .stream()
+                .map(bookMapper::mapFrom)
+                .collect(Collectors.toList());
+
+        return new ResponseEntity<>(bookService.createUpdateBooks(books), HttpStatus.OK);
     }
+    // Creates or updates many books in one transaction and returns the status (CREATED or UPDATED) of each ISBN, e.g.
+    // {"123-1-2345-6789-0": "CREATED", "123-1-2345-6789-1": "UPDATED"}.
+
+    @PostMapping(path = "/books/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportReport> importBooks(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) {
+
+        BookImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? BookImportService.Format.NDJSON
+                : BookImportService.Format.CSV;
+
+        Charset charset = contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+
+        try {
+            return new ResponseEntity<>(
+                    bookImportService.importBooks(new InputStreamReader(body, charset), format), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+    // Unlike PUT /books, the upload is not bound to a list: the service reads the request body as a stream, so an import
+    // of millions of books has no size limit and needs no more memory than one chunk. The report counts the created,
+    // updated and rejected books, and lists the line number and reason of the first rejects, e.g.
+    // {"processed": 3, "created": 1, "updated": 1, "rejected": 1, "rejects": [{"line": 3, "reason": "isbn is required"}]}
 
     @GetMapping(path = "/books")
-    public Page<BookDto> getBooks(Pageable pageable) {
+    public ResponseEntity<Slice<BookDto>> getBooks(
+            Pageable pageable,
+            @RequestParam(name = "count", defaultValue = "exact") String count) {
 
-        Page<Book> books = bookService.getBooks(pageable);
+        Slice<Book> books = switch (count) {
+            case "exact" -> bookService.getBooks(pageable);
+            case "estimated" -> bookService.getBooksWithEstimatedCount(pageable);
+            case "none" -> bookService.getBookSlice(pageable);
+            default -> null;
+        };
+        // count=exact (the default) runs a COUNT query for every page. count=estimated returns a total that may be
+        // slightly out of date but is served from memory, and count=none returns a Slice (i.e. no total at all, only
+        // whether there is a next page).
 
-        return books.map(bookMapper::mapTo);
+        if (books == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        List<BookDto> content = bookMapper.mapAll(books.getContent());
+
+        if (books instanceof Page<Book> page) {
+            return new ResponseEntity<>(
+                    new PageImpl<>(content, page.getPageable(), page.getTotalElements()), HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>(
+                    new SliceImpl<>(content, books.getPageable(), books.hasNext()), HttpStatus.OK);
+        }
     }
     // The PagingAndSortingRepository allows you to control the page size and retrieved page using query parameters
     // defined in the API URL endpoint (e.g. /books?size=5&page=10)
 
+    @GetMapping(path = "/books", params = "fields")
+    public ResponseEntity<Page<Map<String, Object>>> getBooksWithFields(
+            Pageable pageable,
+            @RequestParam("fields") String fields,
+            @RequestParam(name = "count", defaultValue = "exact") String count,
+            @RequestParam(name = "after", required = false) String after) {
+
+        Optional<Set<String>> parsedFields = Fields.parse(fields, FIELDS);
+
+        if (parsedFields.isEmpty() || !count.equals("exact") || after != null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        // The sparse fieldset pages always have an exact total, and cannot be combined with keyset pagination, so
+        // count=estimated, count=none and after= are rejected rather than silently ignored.
+
+        return new ResponseEntity<>(bookService.getBooks(parsedFields.get(), pageable), HttpStatus.OK);
+    }
+    // Sparse fieldset mode, selected by the presence of the fields query parameter: /books?fields=isbn,title returns
+    // pages of books with only those fields. The fields are selected in SQL, so the authors are not even joined unless
+    // one of their fields is requested (e.g. fields=isbn,author.name), and neither entities nor DTOs are created.
+
+    @GetMapping(path = "/books", params = {"after", "!fields"})
+    public ResponseEntity<CursorPageDto<BookDto>> getBooks(
+            @RequestParam("after") String after,
+            @RequestParam(name = "size", defaultValue = "20") int size) {
+
+        Optional<String> afterIsbn = after.isEmpty() ? Optional.of("") : Cursors.decode(after);
+
+        if (afterIsbn.isEmpty() || size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        Slice<Book> books = bookService.getBooks(afterIsbn.get(), size);
+
+        String next = books.hasNext() ? Cursors.encode(books.getContent().get(size - 1).getIsbn()) : null;
+
+        return new ResponseEntity<>(new CursorPageDto<>(bookMapper.mapAll(books.getContent()), next), HttpStatus.OK);
+    }
+    // Keyset pagination mode, selected by the presence of the after query parameter: /books?after=&size=20 returns the
+    // first page, and each response carries the cursor for the next one. The cost of a page does not depend on how deep
+    // it is, because the query seeks on the ISBN primary key instead of skipping rows with OFFSET.
+
+    @GetMapping(path = "/books/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, defaultValue = "") String acceptEncoding) {
+
+        MediaType contentType = switch (format) {
+            case "csv" -> MediaType.parseMediaType("text/csv");
+            case "ndjson" -> MediaType.APPLICATION_NDJSON;
+            default -> null;
+        };
+
+        if (contentType == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        boolean gzip = AcceptEncodings.accepts(acceptEncoding, "gzip");
+        // Parsed rather than searched for "gzip", since e.g. "gzip;q=0" refuses gzip.
+
+        StreamingResponseBody body = outputStream -> {
+
+            OutputStream target = gzip ? new GZIPOutputStream(outputStream, EXPORT_BUFFER_SIZE) : outputStream;
+
+            try (BookExportWriter writer = contentType == MediaType.APPLICATION_NDJSON
+                    ? BookExportWriter.ndjson(target, objectMapper)
+                    : BookExportWriter.csv(target)) {
+
+                bookService.exportBooks(writer);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        return response.body(body);
+    }
+    // Exports the whole catalog (e.g. for analytics) as one linear scan, instead of a client walking GET /books?page=N,
+    // where every page re-reads all the rows before it. The rows are written while they are read from a server-side
+    // cursor, so memory use is constant however many books there are. Compressing with "Accept-Encoding: gzip" usually
+    // shrinks the export several times over, at the cost of some CPU.
+
+    @GetMapping(path = "/books/search")
+    public ResponseEntity<Page<BookDto>> searchBooks(@RequestParam("q") String query, Pageable pageable) {
+
+        Page<Book> books = bookService.searchBooks(query, pageable);
+
+        return new ResponseEntity<>(books.map(bookMapper::mapTo), HttpStatus.OK);
+    }
+    // Searches the titles by token and prefix, e.g. /books/search?q=shad+att matches "The Shadow in the Attic", with
+    // the best matches first. The search runs against an in-memory index (see BookTitleIndex), and only the books on
+    // the requested page are read from the database.
+
     @GetMapping(path = "/books/{isbn}")
-    public ResponseEntity<BookDto> getBook(@PathVariable("isbn") String isbn) {
+    public ResponseEntity<BookDto> getBook(@PathVariable("isbn") String isbn, WebRequest request) {
+
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+
+            Optional<String> eTag = bookService.getBookVersion(isbn).map(ETags::of);
+
+            if (eTag.isPresent() && request.checkNotModified(eTag.get())) {
+                return null;
+            }
+        }
+        // A client that sends back the ETag of its copy (in If-None-Match) is answered from the row versions alone. If
+        // they still match, checkNotModified sets the 304 (Not Modified) status, and null tells Spring that the response
+        // is complete, so the book is neither loaded, mapped nor serialised.
 
         Optional<Book> book = bookService.getBook(isbn);
 
         return book
-                .map(entity -> new ResponseEntity<>(bookMapper.mapTo(entity), HttpStatus.OK))
+                .map(entity -> ResponseEntity.ok().eTag(ETags.of(entity)).body(bookMapper.mapTo(entity)))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping(path = "/books/{isbn}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getBookWithFields(
+            @PathVariable("isbn") String isbn,
+            @RequestParam("fields") String fields) {
+
+        Optional<Set<String>> parsedFields = Fields.parse(fields, FIELDS);
+
+        if (parsedFields.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        return bookService.getBook(isbn, parsedFields.get())
+                .map(book -> new ResponseEntity<>(book, HttpStatus.OK))
                 .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
@@ -87,16 +361,45 @@ public class BookController {
             @PathVariable("isbn") String isbn,
             @RequestBody BookDto bookDto) {
 
-        if (!bookService.isPresent(isbn)) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+        Book book = bookMapper.mapFrom(bookDto);
+
+        Optional<Book> patchedBook = bookService.patchBook(isbn, book);
+
+        return patchedBook
+                .map(entity -> new ResponseEntity<>(bookMapper.mapTo(entity), HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+
+    }
+
+    // Opt-in write-behind patch (see BookPatchQueue): with Prefer: respond-async, the patch is queued and written later
+    // together with others, and the response is 202 Accepted with a token to poll at the Location. A full queue answers
+    // 503 with Retry-After rather than accepting more than it can write. Without the preference (or with other
+    // preferences, which Spring does not match here) the patch is applied synchronously, as RFC 7240 allows.
+    @PatchMapping(path = "/books/{isbn}", headers = "Prefer=respond-async")
+    public ResponseEntity<BookPatchStatus> patchBookAsync(
+            @PathVariable("isbn") String isbn,
+            @RequestBody BookDto bookDto) {
 
         Book book = bookMapper.mapFrom(bookDto);
 
-        Book patchedBook = bookService.patchBook(isbn, book);
+        return bookService.patchBookAsync(isbn, book)
+                .map(status -> ResponseEntity
+                        .accepted()
+                        .location(URI.create("/books/patches/" + status.getToken()))
+                        .header(PREFERENCE_APPLIED, "respond-async")
+                        .body(status))
+                .orElse(ResponseEntity
+                        .status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .build());
+    }
 
-        return new ResponseEntity<>(bookMapper.mapTo(patchedBook), HttpStatus.OK);
+    @GetMapping(path = "/books/patches/{token}")
+    public ResponseEntity<BookPatchStatus> getPatchStatus(@PathVariable("token") String token) {
 
+        return bookService.getPatchStatus(token)
+                .map(status -> new ResponseEntity<>(status, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     @DeleteMapping(path = "/books/{isbn}")
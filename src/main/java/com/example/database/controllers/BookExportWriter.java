@@ -0,0 +1,135 @@
+package com.example.database.controllers;
+
+import com.example.database.domain.projections.BookExportRow;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+// Writes export rows straight to the response as they are read, one line per book. The rows are written field by field
+// instead of being mapped to DTOs and serialised, since the export is the one path where that cost is paid per row of
+// the whole catalog.
+abstract class BookExportWriter implements Consumer<BookExportRow>, Closeable {
+
+    // The same columns as POST /books/import reads, so an export can be imported again as it is. A title with a line
+    // break is written as a quoted field that spans lines, which the import reads back (each line break as \n).
+    static BookExportWriter csv(OutputStream outputStream) throws IOException {
+
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        writer.write("isbn,title,author_id,author_name,author_age\n");
+
+        return new Csv(writer);
+    }
+
+    // The same JSON shape as the other book endpoints.
+    static BookExportWriter ndjson(OutputStream outputStream, ObjectMapper objectMapper) throws IOException {
+
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.setRootValueSeparator(null);
+        // Each line is ended explicitly instead of separating the objects with the default space.
+
+        return new Ndjson(generator);
+    }
+
+    @Override
+    public void accept(BookExportRow row) {
+        try {
+            write(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    abstract void write(BookExportRow row) throws IOException;
+
+    private static final class Csv extends BookExportWriter {
+
+        private Writer writer;
+
+        private Csv(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        void write(BookExportRow row) throws IOException {
+
+            writeField(row.getIsbn());
+            writer.write(',');
+            writeField(row.getTitle());
+            writer.write(',');
+            writeField(row.getAuthorId() == null ? null : row.getAuthorId().toString());
+            writer.write(',');
+            writeField(row.getAuthorName());
+            writer.write(',');
+            writeField(row.getAuthorAge() == null ? null : row.getAuthorAge().toString());
+            writer.write('\n');
+        }
+
+        // A null value is written as an empty field. A field is only quoted when it has to be.
+        private void writeField(String value) throws IOException {
+
+            if (value == null) {
+                return;
+            }
+
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+            } else {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class Ndjson extends BookExportWriter {
+
+        private JsonGenerator generator;
+
+        private Ndjson(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        void write(BookExportRow row) throws IOException {
+
+            generator.writeStartObject();
+            generator.writeStringField("isbn", row.getIsbn());
+            generator.writeStringField("title", row.getTitle());
+
+            if (row.getAuthorId() == null) {
+                generator.writeNullField("author");
+            } else {
+                generator.writeObjectFieldStart("author");
+                generator.writeNumberField("id", row.getAuthorId());
+                generator.writeStringField("name", row.getAuthorName());
+                if (row.getAuthorAge() == null) {
+                    generator.writeNullField("age");
+                } else {
+                    generator.writeNumberField("age", row.getAuthorAge());
+                }
+                generator.writeEndObject();
+            }
+
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.database.controllers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+// Encodes the sort key of the last row of a page into an opaque cursor (and back). Clients must treat cursors as opaque
+// so that the key format can change without breaking them.
+final class Cursors {
+
+    private Cursors() {} // private no-arg constructor
+
+    static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Optional<String> decode(String cursor) {
+        try {
+            return Optional.of(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
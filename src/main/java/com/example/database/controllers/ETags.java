@@ -0,0 +1,32 @@
+package com.example.database.controllers;
+
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import com.example.database.domain.projections.BookVersion;
+
+// Builds strong ETags from row versions. A book response embeds its author, so the ETag of a book combines both
+// versions. The same ETag must be built from a loaded entity and from a version-only lookup.
+final class ETags {
+
+    private ETags() {} // private no-arg constructor
+
+    static String of(Book book) {
+        return of(book.getVersion(), book.getAuthor() == null ? null : book.getAuthor().getVersion());
+    }
+
+    static String of(BookVersion bookVersion) {
+        return of(bookVersion.getVersion(), bookVersion.getAuthorVersion());
+    }
+
+    static String of(Author author) {
+        return "\"" + author.getVersion() + "\"";
+    }
+
+    static String of(Long authorVersion) {
+        return "\"" + authorVersion + "\"";
+    }
+
+    private static String of(long version, Long authorVersion) {
+        return "\"" + version + "-" + (authorVersion == null ? "none" : authorVersion) + "\"";
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.database.controllers;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+// Parses the fields query parameter (a sparse fieldset), e.g. fields=isbn,title,author.name, against the fields an
+// endpoint allows. Naming an association (e.g. author) selects all of its fields. The fields keep the order in which
+// they were requested, which is also their order in the response.
+final class Fields {
+
+    private Fields() {} // private no-arg constructor
+
+    static Optional<Set<String>> parse(String fields, List<String> allowed) {
+
+        Set<String> parsed = new LinkedHashSet<>();
+
+        for (String field : fields.split(",")) {
+
+            String name = field.trim();
+
+            if (allowed.contains(name)) {
+                parsed.add(name);
+                continue;
+            }
+
+            Set<String> nested = new LinkedHashSet<>();
+            allowed.stream().filter(candidate -> candidate.startsWith(name + ".")).forEach(nested::add);
+
+            if (name.isEmpty() || nested.isEmpty()) {
+                return Optional.empty();
+            }
+            // An unknown field is rejected rather than ignored, so that a typo does not silently return less data.
+
+            parsed.addAll(nested);
+        }
+
+        return Optional.of(parsed);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.database.controllers;
+
+import com.example.database.domain.dto.AuthorDto;
+import com.example.database.domain.entities.Author;
+import com.example.database.mappers.Mapper;
+import com.example.database.services.ReactiveAuthorService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+// +-------------------------------------------------------+
+// | Method | Route             | Function                 |
+// +-------------------------------------------------------+
+// | GET    | /reactive/authors | Stream many authors      |
+// +-------------------------------------------------------+
+
+// Non-blocking variant of the author reads (see ReactiveBookController). Writes stay on AuthorController.
+@RestController
+public class ReactiveAuthorController {
+
+    private ReactiveAuthorService reactiveAuthorService;
+
+    private Mapper<Author, AuthorDto> authorMapper;
+
+    public ReactiveAuthorController(ReactiveAuthorService reactiveAuthorService, Mapper<Author, AuthorDto> authorMapper) {
+        this.reactiveAuthorService = reactiveAuthorService;
+        this.authorMapper = authorMapper;
+    }
+
+    @GetMapping(path = "/reactive/authors", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<AuthorDto> getAuthors() {
+
+        return reactiveAuthorService.getAuthors().map(authorMapper::mapTo);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.database.controllers;
+
+import com.example.database.domain.dto.BookDto;
+import com.example.database.domain.entities.Book;
+import com.example.database.mappers.Mapper;
+import com.example.database.services.ReactiveBookService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// +----------------------------------------------------------+
+// | Method | Route                  | Function                |
+// +----------------------------------------------------------+
+// | GET    | /reactive/books/{isbn} | Read one book           |
+// | GET    | /reactive/books        | Stream many books       |
+// +----------------------------------------------------------+
+
+// Non-blocking variants of the book reads, backed by R2DBC. Spring MVC subscribes to the returned Mono or Flux and
+// completes the response asynchronously, so no request thread waits on the database. Writes stay on BookController.
+@RestController
+public class ReactiveBookController {
+
+    private ReactiveBookService reactiveBookService;
+
+    private Mapper<Book, BookDto> bookMapper;
+
+    public ReactiveBookController(ReactiveBookService reactiveBookService, Mapper<Book, BookDto> bookMapper) {
+        this.reactiveBookService = reactiveBookService;
+        this.bookMapper = bookMapper;
+    }
+
+    @GetMapping(path = "/reactive/books", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BookDto> getBooks() {
+
+        return reactiveBookService.getBooks().map(bookMapper::mapTo);
+    }
+    // Each book is written as one line of NDJSON as soon as it is read. Spring MVC requests the next book only once the
+    // previous one has been written, so the database cursor advances at the pace of the client (i.e. backpressure).
+
+    @GetMapping(path = "/reactive/books/{isbn}")
+    public Mono<ResponseEntity<BookDto>> getBook(@PathVariable("isbn") String isbn) {
+
+        return reactiveBookService.getBook(isbn)
+                .map(book -> new ResponseEntity<>(bookMapper.mapTo(book), HttpStatus.OK))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        // An empty Mono means that the book does not exist, like an empty Optional in BookController.
+    }
+}
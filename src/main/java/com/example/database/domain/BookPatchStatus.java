@@ -0,0 +1,27 @@
+package com.example.database.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Progress of a patch accepted for asynchronous (write-behind) processing, identified by the token returned to the
+// client. A patch is QUEUED until the batch it belongs to has been written, and then APPLIED, NOT_FOUND (there is no
+// book with that ISBN) or FAILED.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookPatchStatus {
+
+    private String token;
+
+    private String isbn;
+
+    private State state;
+
+    public enum State {
+        QUEUED,
+        APPLIED,
+        NOT_FOUND,
+        FAILED
+    }
+}
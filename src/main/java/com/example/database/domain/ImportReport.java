@@ -0,0 +1,37 @@
+package com.example.database.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a bulk import: how many records were read, created, updated and rejected, and why each rejected record
+// (identified by its line number in the upload) was rejected. Only the first rejects are listed, so that a bad upload
+// cannot make the report itself unbounded.
+
+@Data
+@NoArgsConstructor
+public class ImportReport {
+
+    private long processed;
+
+    private long created;
+
+    private long updated;
+
+    private long rejected;
+
+    private List<Reject> rejects = new ArrayList<>();
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Reject {
+
+        private long line;
+
+        private String reason;
+    }
+}
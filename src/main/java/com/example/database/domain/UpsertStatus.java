@@ -0,0 +1,7 @@
+package com.example.database.domain;
+
+// Outcome of a create-or-update (upsert) write, which the controllers translate into 201 Created or 200 OK.
+public enum UpsertStatus {
+    CREATED,
+    UPDATED
+}
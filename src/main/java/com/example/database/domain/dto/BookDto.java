@@ -1,5 +1,6 @@
 package com.example.database.domain.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -16,4 +17,9 @@ public class BookDto {
     private String title;
 
     private AuthorDto author;
+
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private Long authorId;
+    // Links the book to an existing author by ID alone, instead of embedding the author (see BookController). It is only
+    // read from requests; responses embed the author as usual.
 }
@@ -0,0 +1,22 @@
+package com.example.database.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// A page of a keyset (cursor) paginated collection. Unlike Page, it carries no total count; next is an opaque cursor to
+// pass as the "after" query parameter to fetch the following page, and is null on the last page.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CursorPageDto<T> {
+
+    private List<T> content;
+
+    private String next;
+}
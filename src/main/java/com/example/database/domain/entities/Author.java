@@ -4,12 +4,14 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Entity
 @Table(name = "authors")
 public class Author {
@@ -21,4 +23,12 @@ public class Author {
     private String name;
 
     private Integer age;
+
+    @Version
+    @ColumnDefault("0")
+    @EqualsAndHashCode.Exclude
+    private long version;
+    // The row version is incremented on every update (by Hibernate, or by the native upsert and patch statements) and
+    // is used for optimistic locking and as the ETag of the author. The column default lets the column be added to an
+    // existing table. It is a primitive so that Spring Data still decides whether an entity is new by its ID.
 }
@@ -4,15 +4,20 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = @Index(name = "books_author_id_isbn_idx", columnList = "author_id, isbn"))
 public class Book {
+    // The index serves the books of an author in ISBN order (GET /authors/{id}/books) as one range scan, and also lets
+    // the database check the foreign key without a full scan when an author is deleted. Hibernate creates it along with
+    // the table (or adds it to an existing table with ddl-auto=update).
 
     @Id
     private String isbn;
@@ -22,4 +27,11 @@ public class Book {
     @ManyToOne(cascade = CascadeType.ALL)
     @JoinColumn(name = "author_id")
     private Author author;
+
+    @Version
+    @ColumnDefault("0")
+    @EqualsAndHashCode.Exclude
+    private long version;
+    // As for Author. The ETag of a book also includes the version of its author, since the author is embedded in the
+    // book response.
 }
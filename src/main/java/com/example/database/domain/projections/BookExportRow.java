@@ -0,0 +1,23 @@
+package com.example.database.domain.projections;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// A class-based (DTO) projection of a book and its author as one flat row, for the export. Hibernate calls the
+// constructor directly for each row of the query (see BookRepository), so unlike an interface projection there is no
+// proxy per row, and unlike an entity nothing is added to the persistence context.
+
+@Data
+@AllArgsConstructor
+public class BookExportRow {
+
+    private String isbn;
+
+    private String title;
+
+    private Long authorId; // null for a book without an author
+
+    private String authorName;
+
+    private Integer authorAge;
+}
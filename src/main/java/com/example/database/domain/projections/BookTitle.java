@@ -0,0 +1,9 @@
+package com.example.database.domain.projections;
+
+// A Spring Data interface projection of the ISBN and title of a book, from which the title search index is built.
+public interface BookTitle {
+
+    String getIsbn();
+
+    String getTitle();
+}
@@ -0,0 +1,10 @@
+package com.example.database.domain.projections;
+
+// A Spring Data interface projection: the repository selects only the row versions of a book and of its author, and
+// Spring Data backs this interface with the selected values, without loading (or managing) either entity.
+public interface BookVersion {
+
+    long getVersion();
+
+    Long getAuthorVersion(); // null for a book without an author
+}
@@ -0,0 +1,16 @@
+package com.example.database.mappers;
+
+import com.example.database.config.MapperConfig;
+import com.example.database.domain.dto.AuthorDto;
+import com.example.database.domain.entities.Author;
+import org.mapstruct.Mapping;
+
+// The implementation (mappers.impl.AuthorMapperImpl) is generated by MapStruct at compile time.
+@org.mapstruct.Mapper(config = MapperConfig.class)
+public interface AuthorMapper extends Mapper<Author, AuthorDto> {
+
+    @Override
+    @Mapping(target = "version", ignore = true)
+    Author mapFrom(AuthorDto authorDto);
+    // The row version is maintained by the database and exposed through the ETag header, not through the DTO.
+}
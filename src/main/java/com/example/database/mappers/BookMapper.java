@@ -0,0 +1,21 @@
+package com.example.database.mappers;
+
+import com.example.database.config.MapperConfig;
+import com.example.database.domain.dto.BookDto;
+import com.example.database.domain.entities.Book;
+import org.mapstruct.Mapping;
+
+// The implementation (mappers.impl.BookMapperImpl) is generated by MapStruct at compile time. The nested author is
+// mapped by delegating to AuthorMapper.
+@org.mapstruct.Mapper(config = MapperConfig.class, uses = AuthorMapper.class)
+public interface BookMapper extends Mapper<Book, BookDto> {
+
+    @Override
+    @Mapping(target = "authorId", ignore = true)
+    BookDto mapTo(Book book);
+
+    @Override
+    @Mapping(target = "version", ignore = true)
+    Book mapFrom(BookDto bookDto);
+    // The authorId of a request is not part of the entity; BookController passes it to the service separately.
+}
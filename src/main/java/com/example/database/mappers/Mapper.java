@@ -1,9 +1,15 @@
 package com.example.database.mappers;
 
+import java.util.Collection;
+import java.util.List;
+
 // This mapper interface is useful if we want to change the mapping library.
 public interface Mapper<Entity, Dto> {
 
     Dto mapTo(Entity entity);
 
     Entity mapFrom(Dto dto);
+
+    List<Dto> mapAll(Collection<Entity> entities);
+    // Bulk variant of mapTo that fills a single pre-sized list, used for pages and lists of entities.
 }
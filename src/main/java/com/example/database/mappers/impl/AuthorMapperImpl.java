@@ -1,30 +0,0 @@
-package com.example.database.mappers.impl;
-
-import com.example.database.domain.dto.AuthorDto;
-import com.example.database.domain.entities.Author;
-import com.example.database.mappers.Mapper;
-import org.modelmapper.ModelMapper;
-import org.springframework.stereotype.Component;
-
-@Component
-public class AuthorMapperImpl implements Mapper<Author, AuthorDto> {
-
-    private ModelMapper modelMapper;
-
-    public AuthorMapperImpl(ModelMapper modelMapper) {
-        this.modelMapper = modelMapper;
-    }
-
-    @Override
-    public AuthorDto mapTo(Author author) {
-        return modelMapper.map(author, AuthorDto.class);
-    }
-    // A class literal in Java refers to the .class syntax used to refer to the class object itself. Class literals are
-    // used where you need to access information about classes at runtime, such as getting class names, methods, fields,
-    // annotations, etc.
-
-    @Override
-    public Author mapFrom(AuthorDto authorDto) {
-        return modelMapper.map(authorDto, Author.class);
-    }
-}
@@ -1,27 +0,0 @@
-package com.example.database.mappers.impl;
-
-import com.example.database.domain.dto.BookDto;
-import com.example.database.domain.entities.Book;
-import com.example.database.mappers.Mapper;
-import org.modelmapper.ModelMapper;
-import org.springframework.stereotype.Component;
-
-@Component
-public class BookMapperImpl implements Mapper<Book, BookDto> {
-
-    private ModelMapper modelMapper;
-
-    public BookMapperImpl(ModelMapper modelMapper) {
-        this.modelMapper = modelMapper;
-    }
-
-    @Override
-    public BookDto mapTo(Book book) {
-        return modelMapper.map(book, BookDto.class);
-    }
-
-    @Override
-    public Book mapFrom(BookDto bookDto) {
-        return modelMapper.map(bookDto, Book.class);
-    }
-}
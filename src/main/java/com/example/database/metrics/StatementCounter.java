@@ -0,0 +1,30 @@
+package com.example.database.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+// Counts the SQL statements that Hibernate prepares on the current thread. Hibernate calls inspect for every statement
+// (see MetricsConfig), and StatementMetricsFilter reads and resets the count around each request. The SQL is returned
+// unchanged.
+@Component
+public class StatementCounter implements StatementInspector {
+
+    private final ThreadLocal<int[]> count = ThreadLocal.withInitial(() -> new int[1]);
+    // A one-element array is a mutable counter without boxing an Integer on every statement.
+
+    @Override
+    public String inspect(String sql) {
+
+        count.get()[0]++;
+
+        return sql;
+    }
+
+    public int get() {
+        return count.get()[0];
+    }
+
+    public void clear() {
+        count.remove();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.database.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Records how many SQL statements each request issued through Hibernate, as the http.server.requests.statements
+// distribution, tagged like http.server.requests (method and URI pattern) so that the two can be read side by side.
+// Statements issued after the request thread has returned (e.g. while streaming a response body asynchronously) and
+// R2DBC statements are not counted.
+@Component
+public class StatementMetricsFilter extends OncePerRequestFilter {
+
+    private StatementCounter statementCounter;
+
+    private MeterRegistry meterRegistry;
+
+    public StatementMetricsFilter(StatementCounter statementCounter, MeterRegistry meterRegistry) {
+        this.statementCounter = statementCounter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        statementCounter.clear();
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            // The URI pattern (e.g. /books/{isbn}) rather than the URI itself, which would create one meter per book.
+
+            DistributionSummary.builder("http.server.requests.statements")
+                    .description("SQL statements issued by Hibernate per request")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+                    .register(meterRegistry)
+                    .record(statementCounter.get());
+
+            statementCounter.clear();
+        }
+    }
+}
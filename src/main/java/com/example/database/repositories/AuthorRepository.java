@@ -1,9 +1,36 @@
 package com.example.database.repositories;
 
 import com.example.database.domain.entities.Author;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
-public interface AuthorRepository extends CrudRepository<Author, Long> {
+public interface AuthorRepository extends CrudRepository<Author, Long>, AuthorRepositoryCustom {
+
+    // Streams all authors from a forward-only cursor instead of loading them into a list. The fetch size makes the
+    // PostgreSQL driver use a server-side cursor (inside a transaction), so only one batch of rows is held in memory at
+    // a time. The stream must be consumed and closed within a transaction.
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select a from Author a order by a.id")
+    Stream<Author> streamAll();
+
+    // Selects only the row version of an author (for its ETag), without loading the author itself.
+    @Query("select a.version from Author a where a.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // Looks up the authors of a chunk of imported books by name, oldest first, in one query.
+    List<Author> findByNameInOrderByIdAsc(Collection<String> names);
 }
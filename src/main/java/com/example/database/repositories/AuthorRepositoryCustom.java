@@ -0,0 +1,19 @@
+package com.example.database.repositories;
+
+import com.example.database.domain.entities.Author;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Custom repository fragment for queries that Spring Data cannot derive. AuthorRepository extends this interface, and
+// Spring Data delegates the calls to repositories.impl.AuthorRepositoryCustomImpl.
+public interface AuthorRepositoryCustom {
+
+    Optional<Author> patch(Long id, Author author);
+
+    List<Map<String, Object>> findAllProjected(Set<String> fields);
+
+    Optional<Map<String, Object>> findProjectedById(Long id, Set<String> fields);
+}
@@ -1,12 +1,88 @@
 package com.example.database.repositories;
 
 import com.example.database.domain.entities.Book;
+import com.example.database.domain.projections.BookExportRow;
+import com.example.database.domain.projections.BookTitle;
+import com.example.database.domain.projections.BookVersion;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface BookRepository extends
         CrudRepository<Book, String>,
-        PagingAndSortingRepository<Book, String> {
+        PagingAndSortingRepository<Book, String>,
+        BookRepositoryCustom {
+
+    // The author of a book is loaded eagerly, but a JPQL query (unlike a lookup by ID) does not join it; Hibernate would
+    // issue one extra SELECT per distinct author on each page (i.e. the N+1 problem). The entity graph makes these read
+    // paths fetch the authors in the same query with a join. For pages, Spring Data derives the separate COUNT query
+    // without the join.
+    @Override
+    @EntityGraph(attributePaths = "author")
+    Page<Book> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = "author")
+    Iterable<Book> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "author")
+    Iterable<Book> findAllById(Iterable<String> isbns);
+
+    @Override
+    @EntityGraph(attributePaths = "author")
+    Optional<Book> findById(String isbn);
+
+    // Returning a Slice instead of a Page makes Spring Data fetch one row more than the page size to know whether there
+    // is a next page, instead of running a COUNT query.
+    @EntityGraph(attributePaths = "author")
+    Slice<Book> findAllBy(Pageable pageable);
+
+    // Selects only the row versions needed for the ETag of a book, which also depends on its (embedded) author.
+    @Query("select b.version as version, a.version as authorVersion from Book b left join b.author a where b.isbn = :isbn")
+    Optional<BookVersion> findVersionByIsbn(@Param("isbn") String isbn);
+
+    // Keyset (seek) pagination: instead of skipping OFFSET rows, each page starts right after the last ISBN of the
+    // previous page, which the primary key index can seek to directly. No COUNT query is issued.
+    @EntityGraph(attributePaths = "author")
+    List<Book> findAllByOrderByIsbnAsc(Limit limit);
+
+    @EntityGraph(attributePaths = "author")
+    List<Book> findByIsbnGreaterThanOrderByIsbnAsc(String isbn, Limit limit);
+
+    // Streams every book with its author as flat rows from a forward-only cursor, for the export. The fetch size makes
+    // the PostgreSQL driver use a server-side cursor (inside a transaction), so only one batch of rows is held in memory
+    // at a time. There is deliberately no ORDER BY, which lets the database answer with one sequential scan (and a hash
+    // join) instead of walking the primary key index. The stream must be consumed and closed within a transaction.
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            select new com.example.database.domain.projections.BookExportRow(b.isbn, b.title, a.id, a.name, a.age)
+            from Book b left join b.author a""")
+    Stream<BookExportRow> streamExportRows();
+
+    // Keyset pagination over the books of one author, served by the (author_id, isbn) index. Comparing b.author.id
+    // reads the foreign key column, so the author is neither joined nor loaded, and the projection keeps each row to
+    // the two columns the index range leads to. Pass an empty ISBN for the first page.
+    @Query("select b.isbn as isbn, b.title as title from Book b where b.author.id = :authorId and b.isbn > :isbn order by b.isbn")
+    List<BookTitle> findByAuthorId(@Param("authorId") Long authorId, @Param("isbn") String isbn, Limit limit);
+
+    // Streams the ISBN and title of every book (and nothing else) to build the title search index, see BookTitleIndex.
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select b.isbn as isbn, b.title as title from Book b")
+    Stream<BookTitle> streamTitles();
 }
@@ -0,0 +1,29 @@
+package com.example.database.repositories;
+
+import com.example.database.domain.UpsertStatus;
+import com.example.database.domain.entities.Book;
+
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Custom repository fragment for queries that Spring Data cannot derive. BookRepository extends this interface, and
+// Spring Data delegates the calls to repositories.impl.BookRepositoryCustomImpl.
+public interface BookRepositoryCustom {
+
+    UpsertStatus upsert(Book book);
+
+    Optional<Book> patch(String isbn, Book book);
+
+    Set<String> patchTitles(Map<String, String> titles);
+
+    long importBooks(Collection<Book> books);
+
+    List<Map<String, Object>> findAllProjected(Set<String> fields, Pageable pageable);
+
+    Optional<Map<String, Object>> findProjectedById(String isbn, Set<String> fields);
+}
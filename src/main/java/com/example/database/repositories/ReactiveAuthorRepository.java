@@ -0,0 +1,10 @@
+package com.example.database.repositories;
+
+import com.example.database.domain.entities.Author;
+import reactor.core.publisher.Flux;
+
+// Non-blocking read access to the authors over R2DBC, alongside the blocking AuthorRepository (JPA).
+public interface ReactiveAuthorRepository {
+
+    Flux<Author> findAll();
+}
@@ -0,0 +1,14 @@
+package com.example.database.repositories;
+
+import com.example.database.domain.entities.Book;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Non-blocking read access to the books over R2DBC, alongside the blocking BookRepository (JPA). The books are returned
+// as plain (i.e. unmanaged) objects with their authors, since R2DBC has no persistence context or lazy loading.
+public interface ReactiveBookRepository {
+
+    Flux<Book> findAll();
+
+    Mono<Book> findById(String isbn);
+}
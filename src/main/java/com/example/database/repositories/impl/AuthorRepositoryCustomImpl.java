@@ -0,0 +1,97 @@
+package com.example.database.repositories.impl;
+
+import com.example.database.domain.entities.Author;
+import com.example.database.repositories.AuthorRepositoryCustom;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.query.TypedParameterValue;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public class AuthorRepositoryCustomImpl implements AuthorRepositoryCustom {
+
+    private EntityManager entityManager;
+
+    private boolean postgreSQL;
+
+    public AuthorRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+        this.postgreSQL = Dialects.isPostgreSQL(entityManager);
+    }
+
+    // Applies a partial update in a single statement that also returns the updated row, instead of loading the author,
+    // changing it and saving it. A null field keeps its current value (COALESCE), and no row means no such author. H2
+    // has no RETURNING clause, but selecting from the FINAL TABLE of the UPDATE is equivalent.
+    private static final String POSTGRESQL_PATCH = """
+            UPDATE authors SET name = COALESCE(:name, name), age = COALESCE(:age, age), version = version + 1
+            WHERE id = :id
+            RETURNING id, name, age, version""";
+
+    private static final String H2_PATCH = """
+            SELECT id, name, age, version FROM FINAL TABLE (
+                UPDATE authors SET name = COALESCE(:name, name), age = COALESCE(:age, age), version = version + 1
+                WHERE id = :id)""";
+
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public Optional<Author> patch(Long id, Author author) {
+
+        List<Object[]> rows = entityManager
+                .createNativeQuery(postgreSQL ? POSTGRESQL_PATCH : H2_PATCH)
+                .setParameter("id", id)
+                .setParameter("name", new TypedParameterValue<>(StandardBasicTypes.STRING, author.getName()))
+                .setParameter("age", new TypedParameterValue<>(StandardBasicTypes.INTEGER, author.getAge()))
+                .getResultList();
+
+        return rows.stream().findFirst().map(row -> Author.builder()
+                .id(((Number) row[0]).longValue())
+                .name((String) row[1])
+                .age((Integer) row[2])
+                .version(((Number) row[3]).longValue())
+                .build());
+        // The author is built from the returned columns rather than mapped as an entity, because an entity query would
+        // return any stale instance of the same author already held in the persistence context.
+    }
+
+    // Selects only the requested fields of the authors, see SparseFieldsets.
+    @Override
+    public List<Map<String, Object>> findAllProjected(Set<String> fields) {
+
+        CriteriaQuery<Tuple> query = entityManager.getCriteriaBuilder().createTupleQuery();
+        Root<Author> author = query.from(Author.class);
+
+        SparseFieldsets.select(query, author, fields);
+
+        return entityManager
+                .createQuery(query)
+                .getResultStream()
+                .map(tuple -> SparseFieldsets.toMap(tuple, fields))
+                .toList();
+    }
+
+    @Override
+    public Optional<Map<String, Object>> findProjectedById(Long id, Set<String> fields) {
+
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Author> author = query.from(Author.class);
+
+        SparseFieldsets.select(query, author, fields);
+        query.where(criteriaBuilder.equal(author.get("id"), id));
+
+        return entityManager
+                .createQuery(query)
+                .getResultStream()
+                .findFirst()
+                .map(tuple -> SparseFieldsets.toMap(tuple, fields));
+    }
+}
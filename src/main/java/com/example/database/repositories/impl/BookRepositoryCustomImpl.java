@@ -0,0 +1,333 @@
+package com.example.database.repositories.impl;
+
+import com.example.database.domain.UpsertStatus;
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import com.example.database.repositories.BookRepositoryCustom;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.query.TypedParameterValue;
+import org.hibernate.type.StandardBasicTypes;
+import org.postgresql.PGConnection;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    private EntityManager entityManager;
+
+    private boolean postgreSQL;
+
+    public BookRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+        this.postgreSQL = Dialects.isPostgreSQL(entityManager);
+    }
+
+    // Inserts or updates the book in a single statement, and lets the database report which one happened. This avoids
+    // both the existence check and the SELECT that merge (i.e. save) issues before writing an entity with an assigned
+    // ID, and closes the race window between the two.
+
+    // On PostgreSQL, xmax is 0 for a freshly inserted row version, and set for a row version created by an update. On
+    // H2, the OLD TABLE of a MERGE contains the rows as they were before being updated, so it is empty for an insert.
+    private static final String POSTGRESQL_UPSERT = """
+            INSERT INTO books (isbn, title, author_id, version)
+            VALUES (:isbn, :title, :authorId, 0)
+            ON CONFLICT (isbn) DO UPDATE
+            SET title = excluded.title, author_id = excluded.author_id, version = books.version + 1
+            RETURNING (xmax = 0)""";
+
+    private static final String H2_UPSERT = """
+            SELECT COUNT(*) = 0 FROM OLD TABLE (
+                MERGE INTO books b
+                USING (VALUES (CAST(:isbn AS VARCHAR), CAST(:title AS VARCHAR), CAST(:authorId AS BIGINT)))
+                    AS s (isbn, title, author_id)
+                ON b.isbn = s.isbn
+                WHEN MATCHED THEN
+                    UPDATE SET title = s.title, author_id = s.author_id, version = b.version + 1
+                WHEN NOT MATCHED THEN
+                    INSERT (isbn, title, author_id, version) VALUES (s.isbn, s.title, s.author_id, 0))""";
+    // Both statements maintain the row version (see Author), which Hibernate only does for entities it writes itself.
+
+    @Override
+    @Transactional
+    public UpsertStatus upsert(Book book) {
+
+        Long authorId = book.getAuthor() == null ? null : book.getAuthor().getId();
+
+        Boolean created = (Boolean) entityManager
+                .createNativeQuery(postgreSQL ? POSTGRESQL_UPSERT : H2_UPSERT, Boolean.class)
+                .setParameter("isbn", book.getIsbn())
+                .setParameter("title", book.getTitle())
+                .setParameter("authorId", new TypedParameterValue<>(StandardBasicTypes.LONG, authorId))
+                .getSingleResult();
+        // The type of a null parameter cannot be inferred from its value, hence the typed parameter for the author ID.
+
+        return created ? UpsertStatus.CREATED : UpsertStatus.UPDATED;
+    }
+
+    // Applies a partial update in a single statement that returns the updated book together with its author, see
+    // AuthorRepositoryCustomImpl. A null title keeps the current title.
+    private static final String POSTGRESQL_PATCH = """
+            WITH patched AS (
+                UPDATE books SET title = COALESCE(:title, title), version = version + 1
+                WHERE isbn = :isbn
+                RETURNING isbn, title, author_id, version)
+            SELECT p.isbn, p.title, p.version, a.id, a.name, a.age, a.version
+            FROM patched p LEFT JOIN authors a ON a.id = p.author_id""";
+
+    private static final String H2_PATCH = """
+            SELECT p.isbn, p.title, p.version, a.id, a.name, a.age, a.version
+            FROM FINAL TABLE (
+                UPDATE books SET title = COALESCE(:title, title), version = version + 1
+                WHERE isbn = :isbn) p
+            LEFT JOIN authors a ON a.id = p.author_id""";
+
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public Optional<Book> patch(String isbn, Book book) {
+
+        List<Object[]> rows = entityManager
+                .createNativeQuery(postgreSQL ? POSTGRESQL_PATCH : H2_PATCH)
+                .setParameter("isbn", isbn)
+                .setParameter("title", new TypedParameterValue<>(StandardBasicTypes.STRING, book.getTitle()))
+                .getResultList();
+
+        return rows.stream().findFirst().map(row -> Book.builder()
+                .isbn((String) row[0])
+                .title((String) row[1])
+                .version(((Number) row[2]).longValue())
+                .author(row[3] == null ? null : Author.builder()
+                        .id(((Number) row[3]).longValue())
+                        .name((String) row[4])
+                        .age((Integer) row[5])
+                        .version(((Number) row[6]).longValue())
+                        .build())
+                .build());
+    }
+
+    // The same statement as the patch, without returning the book, so that many patches can be sent as one JDBC batch
+    // (i.e. one round trip). The cast gives a null title a type on PostgreSQL, as with the typed parameter above.
+    private static final String PATCH_TITLE = """
+            UPDATE books SET title = COALESCE(CAST(? AS VARCHAR), title), version = version + 1
+            WHERE isbn = ?""";
+
+    @Override
+    @Transactional
+    public Set<String> patchTitles(Map<String, String> titles) {
+
+        if (titles.isEmpty()) {
+            return Set.of();
+        }
+
+        List<String> isbns = titles.keySet().stream().sorted().toList();
+        // Rows are locked in ISBN order, so that two instances flushing overlapping batches cannot deadlock.
+
+        int[] counts = entityManager
+                .unwrap(Session.class)
+                .doReturningWork(connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(PATCH_TITLE)) {
+                        for (String isbn : isbns) {
+                            statement.setString(1, titles.get(isbn));
+                            statement.setString(2, isbn);
+                            statement.addBatch();
+                        }
+                        return statement.executeBatch();
+                    }
+                });
+
+        Set<String> patched = new HashSet<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                patched.add(isbns.get(i));
+            }
+        }
+        // The update count of each statement tells which ISBNs exist; the others are not books (anymore).
+
+        return patched;
+    }
+
+    // Bulk loads books on PostgreSQL: the rows are streamed into a temporary staging table with COPY (the fastest way to
+    // get rows into PostgreSQL, with none of the per-statement overhead of INSERT), and then merged into books by one
+    // set-based upsert, which reports how many of the rows were inserted. ON COMMIT DROP removes the staging table with
+    // the transaction, so a pooled connection does not carry it over to the next import.
+    private static final String POSTGRESQL_CREATE_STAGING = """
+            CREATE TEMPORARY TABLE books_import (isbn varchar(255), title varchar(255), author_id bigint)
+            ON COMMIT DROP""";
+
+    private static final String POSTGRESQL_COPY_STAGING = """
+            COPY books_import (isbn, title, author_id) FROM STDIN WITH (FORMAT csv)""";
+
+    private static final String POSTGRESQL_MERGE_STAGING = """
+            WITH merged AS (
+                INSERT INTO books (isbn, title, author_id, version)
+                SELECT isbn, title, author_id, 0 FROM books_import
+                ON CONFLICT (isbn) DO UPDATE
+                SET title = excluded.title, author_id = excluded.author_id, version = books.version + 1
+                RETURNING (xmax = 0) AS created)
+            SELECT COUNT(*) FILTER (WHERE created) FROM merged""";
+
+    // H2 has no COPY, so the books are merged with one batched MERGE statement instead, after counting how many of them
+    // already exist (the batch update counts do not tell inserts from updates).
+    private static final String H2_COUNT_EXISTING = """
+            SELECT COUNT(*) FROM books WHERE isbn = ANY(?)""";
+
+    private static final String H2_MERGE = """
+            MERGE INTO books b
+            USING (VALUES (CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS BIGINT))) AS s (isbn, title, author_id)
+            ON b.isbn = s.isbn
+            WHEN MATCHED THEN
+                UPDATE SET title = s.title, author_id = s.author_id, version = b.version + 1
+            WHEN NOT MATCHED THEN
+                INSERT (isbn, title, author_id, version) VALUES (s.isbn, s.title, s.author_id, 0)""";
+
+    // Creates or updates the books (whose ISBNs must be distinct, since a row cannot be upserted twice by one statement)
+    // and returns how many were created. The authors must already have IDs.
+    @Override
+    @Transactional
+    public long importBooks(Collection<Book> books) {
+
+        if (books.isEmpty()) {
+            return 0;
+        }
+
+        entityManager.flush();
+        // The statements run on the JDBC connection of the transaction, bypassing Hibernate, so any authors persisted
+        // for these books must be written first.
+
+        return entityManager
+                .unwrap(Session.class)
+                .doReturningWork(connection -> postgreSQL ? copyBooks(connection, books) : mergeBooks(connection, books));
+    }
+
+    private long copyBooks(Connection connection, Collection<Book> books) throws SQLException {
+
+        StringBuilder csv = new StringBuilder();
+        for (Book book : books) {
+            csv.append(csvField(book.getIsbn())).append(',')
+                    .append(csvField(book.getTitle())).append(',')
+                    .append(book.getAuthor() == null ? "" : book.getAuthor().getId())
+                    .append('\n');
+        }
+        // An unquoted empty field is NULL in CSV format, and a quoted one is an empty string.
+
+        try (Statement statement = connection.createStatement()) {
+
+            statement.execute(POSTGRESQL_CREATE_STAGING);
+
+            connection
+                    .unwrap(PGConnection.class)
+                    .getCopyAPI()
+                    .copyIn(POSTGRESQL_COPY_STAGING, new StringReader(csv.toString()));
+            // unwrap reaches the driver connection through the pool (and gate) proxies.
+
+            try (ResultSet resultSet = statement.executeQuery(POSTGRESQL_MERGE_STAGING)) {
+                resultSet.next();
+                long created = resultSet.getLong(1);
+
+                statement.execute("DROP TABLE books_import");
+                // Dropped now rather than on commit, in case the transaction imports more books.
+
+                return created;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csvField(String value) {
+        return value == null ? "" : '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private long mergeBooks(Connection connection, Collection<Book> books) throws SQLException {
+
+        long existing;
+        try (PreparedStatement statement = connection.prepareStatement(H2_COUNT_EXISTING)) {
+            statement.setArray(1, connection.createArrayOf("VARCHAR", books.stream().map(Book::getIsbn).toArray()));
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                existing = resultSet.getLong(1);
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(H2_MERGE)) {
+            for (Book book : books) {
+                statement.setString(1, book.getIsbn());
+                statement.setString(2, book.getTitle());
+                if (book.getAuthor() == null) {
+                    statement.setNull(3, Types.BIGINT);
+                } else {
+                    statement.setLong(3, book.getAuthor().getId());
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+
+        return books.size() - existing;
+    }
+
+    // Selects only the requested fields of a page of books, see SparseFieldsets. The sort may also use author attributes
+    // (e.g. sort=author.name), which join the author for the ORDER BY only.
+    @Override
+    public List<Map<String, Object>> findAllProjected(Set<String> fields, Pageable pageable) {
+
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Book> book = query.from(Book.class);
+
+        SparseFieldsets.select(query, book, fields);
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), book, criteriaBuilder));
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+        }
+
+        return typedQuery
+                .getResultStream()
+                .map(tuple -> SparseFieldsets.toMap(tuple, fields))
+                .toList();
+    }
+
+    @Override
+    public Optional<Map<String, Object>> findProjectedById(String isbn, Set<String> fields) {
+
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Book> book = query.from(Book.class);
+
+        SparseFieldsets.select(query, book, fields);
+        query.where(criteriaBuilder.equal(book.get("isbn"), isbn));
+
+        return entityManager
+                .createQuery(query)
+                .getResultStream()
+                .findFirst()
+                .map(tuple -> SparseFieldsets.toMap(tuple, fields));
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.database.repositories.impl;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+// The native queries in the custom repository fragments use PostgreSQL syntax in production and the H2 equivalent in
+// the tests, which run against H2 in PostgreSQL compatibility mode (which does not support ON CONFLICT ... DO UPDATE or
+// RETURNING). Hibernate has already resolved the dialect from the JDBC connection, so there is no need to configure it.
+final class Dialects {
+
+    private Dialects() {} // private no-arg constructor
+
+    static boolean isPostgreSQL(EntityManager entityManager) {
+        return entityManager
+                .getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect() instanceof PostgreSQLDialect;
+    }
+}
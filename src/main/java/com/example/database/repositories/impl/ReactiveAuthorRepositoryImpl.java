@@ -0,0 +1,32 @@
+package com.example.database.repositories.impl;
+
+import com.example.database.domain.entities.Author;
+import com.example.database.repositories.ReactiveAuthorRepository;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public class ReactiveAuthorRepositoryImpl implements ReactiveAuthorRepository {
+
+    private DatabaseClient databaseClient;
+
+    public ReactiveAuthorRepositoryImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Flux<Author> findAll() {
+
+        return databaseClient.sql("SELECT id, name, age, version FROM authors ORDER BY id")
+                .filter(statement -> statement.fetchSize(ReactiveBookRepositoryImpl.FETCH_SIZE))
+                .map(row -> Author.builder()
+                        .id(row.get("id", Long.class))
+                        .name(row.get("name", String.class))
+                        .age(row.get("age", Integer.class))
+                        .version(row.get("version", Long.class))
+                        .build())
+                .all();
+        // Streamed with backpressure, as for the books (see ReactiveBookRepositoryImpl).
+    }
+}
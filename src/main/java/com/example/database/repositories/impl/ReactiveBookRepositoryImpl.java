@@ -0,0 +1,66 @@
+package com.example.database.repositories.impl;
+
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import com.example.database.repositories.ReactiveBookRepository;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public class ReactiveBookRepositoryImpl implements ReactiveBookRepository {
+
+    private DatabaseClient databaseClient;
+
+    static final int FETCH_SIZE = 500;
+
+    public ReactiveBookRepositoryImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    // The authors are joined in the same query, as the entity graphs do for the JPA read paths. The SQL is the same on
+    // PostgreSQL and H2.
+    private static final String SELECT_BOOKS = """
+            SELECT b.isbn, b.title, b.version,
+                   a.id AS author_id, a.name AS author_name, a.age AS author_age, a.version AS author_version
+            FROM books b LEFT JOIN authors a ON a.id = b.author_id""";
+
+    @Override
+    public Flux<Book> findAll() {
+
+        return databaseClient.sql(SELECT_BOOKS + " ORDER BY b.isbn")
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(ReactiveBookRepositoryImpl::mapBook)
+                .all();
+        // The rows are emitted as the subscriber requests them. The fetch size makes the PostgreSQL driver read them
+        // from a cursor in batches, so a slow client holds back the query instead of buffering the whole table.
+    }
+
+    @Override
+    public Mono<Book> findById(String isbn) {
+
+        return databaseClient.sql(SELECT_BOOKS + " WHERE b.isbn = :isbn")
+                .bind("isbn", isbn)
+                .map(ReactiveBookRepositoryImpl::mapBook)
+                .one();
+    }
+
+    private static Book mapBook(Readable row) {
+
+        Long authorId = row.get("author_id", Long.class);
+
+        return Book.builder()
+                .isbn(row.get("isbn", String.class))
+                .title(row.get("title", String.class))
+                .version(row.get("version", Long.class))
+                .author(authorId == null ? null : Author.builder()
+                        .id(authorId)
+                        .name(row.get("author_name", String.class))
+                        .age(row.get("author_age", Integer.class))
+                        .version(row.get("author_version", Long.class))
+                        .build())
+                .build();
+    }
+}
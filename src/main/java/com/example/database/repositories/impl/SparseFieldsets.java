@@ -0,0 +1,92 @@
+package com.example.database.repositories.impl;
+
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Builds the SELECT list of a tuple query from a sparse fieldset, i.e. the attribute paths a client asked for, such as
+// "title" or "author.name", and turns each result row back into a (nested) map with just those fields. Only the
+// requested columns are selected, and an association is only (left) joined when one of its attributes is requested. No
+// entity is loaded, so eager associations are not fetched either.
+final class SparseFieldsets {
+
+    private SparseFieldsets() {} // private no-arg constructor
+
+    // Every joined association also selects its ID, right before its first requested attribute, to tell a missing
+    // association (e.g. a book without an author) from one whose requested attributes are all null. The tuple elements
+    // are read back by position, in the same order as they are selected.
+    static void select(CriteriaQuery<Tuple> query, Root<?> root, Set<String> fields) {
+
+        Map<String, From<?, ?>> joins = new HashMap<>();
+        List<Selection<?>> selections = new ArrayList<>();
+
+        for (String field : fields) {
+
+            int dot = field.indexOf('.');
+
+            if (dot < 0) {
+                selections.add(root.get(field));
+                continue;
+            }
+
+            String association = field.substring(0, dot);
+
+            if (!joins.containsKey(association)) {
+                From<?, ?> join = root.join(association, JoinType.LEFT);
+                joins.put(association, join);
+                selections.add(join.get("id"));
+            }
+
+            selections.add(joins.get(association).get(field.substring(dot + 1)));
+        }
+
+        query.multiselect(selections);
+    }
+
+    static Map<String, Object> toMap(Tuple tuple, Set<String> fields) {
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        Set<String> associations = new HashSet<>();
+
+        int index = 0;
+
+        for (String field : fields) {
+
+            int dot = field.indexOf('.');
+
+            if (dot < 0) {
+                map.put(field, tuple.get(index++));
+                continue;
+            }
+
+            String association = field.substring(0, dot);
+
+            if (associations.add(association) && tuple.get(index++) != null) {
+                map.put(association, new LinkedHashMap<>());
+            } else if (!map.containsKey(association)) {
+                map.put(association, null);
+            }
+
+            Object value = tuple.get(index++);
+
+            if (map.get(association) instanceof Map<?, ?> nested) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> attributes = (Map<String, Object>) nested;
+                attributes.put(field.substring(dot + 1), value);
+            }
+        }
+
+        return map;
+    }
+}
@@ -4,7 +4,10 @@ import com.example.database.domain.dto.AuthorDto;
 import com.example.database.domain.entities.Author;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface AuthorService {
 
@@ -12,11 +15,19 @@ public interface AuthorService {
 
     List<Author> getAuthors();
 
+    List<Map<String, Object>> getAuthors(Set<String> fields);
+
+    void streamAuthors(Consumer<Author> consumer);
+
     Optional<Author> getAuthor(Long id);
 
+    Optional<Map<String, Object>> getAuthor(Long id, Set<String> fields);
+
+    Optional<Long> getAuthorVersion(Long id);
+
     Author updateAuthor(Long id, Author author);
 
-    Author patchAuthor(Long id, Author author);
+    Optional<Author> patchAuthor(Long id, Author author);
 
     void deleteAuthor(Long id);
 
@@ -0,0 +1,15 @@
+package com.example.database.services;
+
+import com.example.database.domain.ImportReport;
+
+import java.io.Reader;
+
+public interface BookImportService {
+
+    enum Format {
+        CSV,
+        NDJSON
+    }
+
+    ImportReport importBooks(Reader reader, Format format);
+}
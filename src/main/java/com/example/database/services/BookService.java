@@ -1,23 +1,60 @@
 package com.example.database.services;
 
+import com.example.database.domain.BookPatchStatus;
+import com.example.database.domain.UpsertStatus;
 import com.example.database.domain.entities.Book;
+import com.example.database.domain.projections.BookExportRow;
+import com.example.database.domain.projections.BookTitle;
+import com.example.database.domain.projections.BookVersion;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface BookService {
 
     Book createUpdateBook(String isbn, Book book);
 
+    UpsertStatus upsertBook(String isbn, Book book);
+
+    UpsertStatus upsertBook(String isbn, Book book, Long authorId);
+
+    Map<String, UpsertStatus> createUpdateBooks(List<Book> books);
+
     List<Book> getBooks();
 
     Page<Book> getBooks(Pageable pageable);
 
+    Page<Map<String, Object>> getBooks(Set<String> fields, Pageable pageable);
+
+    Page<Book> getBooksWithEstimatedCount(Pageable pageable);
+
+    Slice<Book> getBookSlice(Pageable pageable);
+
+    Slice<Book> getBooks(String afterIsbn, int size);
+
+    Slice<BookTitle> getBooksByAuthor(Long authorId, String afterIsbn, int size);
+
+    void exportBooks(Consumer<BookExportRow> consumer);
+
+    Page<Book> searchBooks(String query, Pageable pageable);
+
     Optional<Book> getBook(String isbn);
 
-    Book patchBook(String isbn, Book book);
+    Optional<Map<String, Object>> getBook(String isbn, Set<String> fields);
+
+    Optional<BookVersion> getBookVersion(String isbn);
+
+    Optional<Book> patchBook(String isbn, Book book);
+
+    Optional<BookPatchStatus> patchBookAsync(String isbn, Book book);
+
+    Optional<BookPatchStatus> getPatchStatus(String token);
 
     void deleteBook(String isbn);
 
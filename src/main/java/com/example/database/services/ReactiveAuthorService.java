@@ -0,0 +1,9 @@
+package com.example.database.services;
+
+import com.example.database.domain.entities.Author;
+import reactor.core.publisher.Flux;
+
+public interface ReactiveAuthorService {
+
+    Flux<Author> getAuthors();
+}
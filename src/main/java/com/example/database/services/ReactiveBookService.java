@@ -0,0 +1,12 @@
+package com.example.database.services;
+
+import com.example.database.domain.entities.Book;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveBookService {
+
+    Flux<Book> getBooks();
+
+    Mono<Book> getBook(String isbn);
+}
@@ -1,33 +1,69 @@
 package com.example.database.services.impl;
 
+import com.example.database.config.CacheConfig;
 import com.example.database.domain.dto.AuthorDto;
 import com.example.database.domain.entities.Author;
 import com.example.database.repositories.AuthorRepository;
 import com.example.database.services.AuthorService;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Service
+@Timed("service.invocations")
 public class AuthorServiceImpl implements AuthorService {
 
     private AuthorRepository authorRepository;
 
-    public AuthorServiceImpl(AuthorRepository authorRepository) {
+    private EntityManager entityManager;
+
+    private SingleFlight<Long, Optional<Author>> authorLoads;
+
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    public AuthorServiceImpl(
+            AuthorRepository authorRepository,
+            EntityManager entityManager,
+            MeterRegistry meterRegistry) {
         this.authorRepository = authorRepository;
+        this.entityManager = entityManager;
+        this.authorLoads = new SingleFlight<>("authors", meterRegistry);
     }
 
     @Override
+    @CacheEvict(cacheNames = {CacheConfig.AUTHORS, CacheConfig.AUTHOR_EXISTS}, key = "#result.id")
     public Author createAuthor(Author author) {
 
+        author.setId(null);
+        // POST always creates an author. Merging a client-supplied ID would overwrite an existing author, and fail the
+        // optimistic lock check once that author has been updated, since the request does not carry the row version.
+
         return authorRepository.save(author);
         // Recall that the save method returns the same object by default.
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getAuthors(Set<String> fields) {
+        return authorRepository.findAllProjected(fields);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<Author> getAuthors() {
 
         // Recall that the findAll method returns an Iterable. The following converts the Iterable to a List.
@@ -37,44 +73,97 @@ public class AuthorServiceImpl implements AuthorService {
     }
 
     @Override
-    public Optional<Author> getAuthor(Long id) {
+    @Transactional(readOnly = true)
+    public void streamAuthors(Consumer<Author> consumer) {
 
-        return authorRepository.findById(id);
-    }
+        try (Stream<Author> authors = authorRepository.streamAll()) {
 
-    @Override
-    public Author updateAuthor(Long id, Author author) {
+            int count = 0;
 
-        author.setId(id);
+            for (Author author : (Iterable<Author>) authors::iterator) {
+                consumer.accept(author);
 
-        return authorRepository.save(author);
+                if (++count % STREAM_CHUNK_SIZE == 0) {
+                    entityManager.clear();
+                }
+                // The persistence context keeps a reference to every entity it has loaded. Clearing it once per chunk
+                // lets the authors that have already been handed to the consumer be garbage collected.
+            }
+        }
     }
 
+    // As for books (see BookServiceImpl.getBook), the cached reads and the version check run on the primary.
     @Override
-    public Author patchAuthor(Long id, Author author) {
+    @Cacheable(cacheNames = CacheConfig.AUTHORS, key = "#id", unless = "#result == null")
+    @Transactional
+    public Optional<Author> getAuthor(Long id) {
 
-        author.setId(id);
+        return authorLoads.load(id, () -> authorRepository.findById(id)).map(author -> author.toBuilder().build());
+        // Concurrent cache misses for the same author share a single SELECT, and each caller gets its own copy of the
+        // author (see BookServiceImpl.getBook).
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Map<String, Object>> getAuthor(Long id, Set<String> fields) {
+        return authorRepository.findProjectedById(id, fields);
+    }
 
-        return authorRepository.findById(id).map(existingAuthor -> {
-            Optional.ofNullable(author.getName()).ifPresent(existingAuthor::setName);
-            // getName() may return null, but if present, setName for existingAuthor with that value.
-            Optional.ofNullable(author.getAge()).ifPresent(existingAuthor::setAge);
-            // getAge() may return null, but if present, setAge for existingAuthor with that value.
+    // Cached books embed their author, so they are evicted too.
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.AUTHORS, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true)
+    })
+    @Transactional
+    public Author updateAuthor(Long id, Author author) {
 
-            return authorRepository.save(existingAuthor);
+        return authorRepository.findById(id)
+                .map(existingAuthor -> {
+                    existingAuthor.setName(author.getName());
+                    existingAuthor.setAge(author.getAge());
+                    return existingAuthor;
+                })
+                .orElseGet(() -> {
+                    author.setId(null);
+                    return authorRepository.save(author);
+                });
+        // The managed author is changed and written by dirty checking when the transaction commits, which also
+        // increments its row version. Saving the deserialised author instead would merge a version of 0.
+    }
 
-        }).orElseThrow(() -> new RuntimeException("Author does not exist"));
-        // Note that it is near impossible for this runtime exception to be thrown because the existence of the author
-        // in the database is already verified in the controller.
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.AUTHORS, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true)
+    })
+    public Optional<Author> patchAuthor(Long id, Author author) {
+
+        return authorRepository.patch(id, author);
+        // The name and age are only changed if present (i.e. not null) in the given author. An empty result means that
+        // the author does not exist, since the patch is a single UPDATE statement without a prior existence check.
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = {CacheConfig.AUTHORS, CacheConfig.AUTHOR_EXISTS}, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true)
+    })
     public void deleteAuthor(Long id) {
 
         authorRepository.deleteById(id);
     }
 
     @Override
+    @Transactional
+    public Optional<Long> getAuthorVersion(Long id) {
+
+        return authorRepository.findVersionById(id);
+    }
+
+    @Override
+    @Cacheable(cacheNames = CacheConfig.AUTHOR_EXISTS, key = "#id")
+    @Transactional
     public boolean isPresent(Long id) {
 
         return authorRepository.existsById(id);
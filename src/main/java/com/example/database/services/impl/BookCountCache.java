@@ -0,0 +1,102 @@
+package com.example.database.services.impl;
+
+import com.example.database.repositories.BookRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps an approximate total number of books in memory, so that pages with an estimated total do not need a COUNT query
+// (which is a full scan on PostgreSQL). BookServiceImpl adjusts the counter on the writes it performs; writes made by
+// other instances or directly in the database are picked up when the counter is refreshed with an exact COUNT, which
+// happens once it is older than books.count.max-staleness. The refresh runs in the background while the requests keep
+// getting the stale count, so that only the very first request waits for a COUNT.
+@Component
+public class BookCountCache {
+
+    private BookRepository bookRepository;
+
+    private long maxStalenessNanos;
+
+    private AtomicLong count = new AtomicLong();
+
+    private volatile long refreshedAt;
+
+    private volatile boolean initialised;
+
+    private AtomicBoolean refreshing = new AtomicBoolean();
+
+    private ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-count-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BookCountCache(
+            BookRepository bookRepository,
+            @Value("${books.count.max-staleness:30s}") Duration maxStaleness) {
+        this.bookRepository = bookRepository;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+    }
+
+    public long get() {
+
+        if (!initialised) {
+            refresh();
+        } else if (System.nanoTime() - refreshedAt > maxStalenessNanos && refreshing.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    // The stale count is kept, and the next request past the staleness limit tries again.
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+        // At most one refresh is in flight, however many requests find the counter stale.
+
+        return count.get();
+    }
+
+    // As in BookTitleIndex, a change made inside a transaction is applied once it commits, so that a rolled back write
+    // never skews the count.
+    public void adjust(long delta) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            count.addAndGet(delta);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                count.addAndGet(delta);
+            }
+        });
+    }
+
+    private synchronized void refresh() {
+
+        if (initialised && System.nanoTime() - refreshedAt <= maxStalenessNanos) {
+            return;
+        }
+        // Another thread may have refreshed the counter while this one was waiting for the lock.
+
+        count.set(bookRepository.count());
+        refreshedAt = System.nanoTime();
+        initialised = true;
+    }
+
+    @PreDestroy
+    public void close() {
+        refresher.shutdownNow();
+    }
+}
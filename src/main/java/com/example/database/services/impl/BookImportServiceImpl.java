@@ -0,0 +1,398 @@
+package com.example.database.services.impl;
+
+import com.example.database.config.CacheConfig;
+import com.example.database.domain.ImportReport;
+import com.example.database.domain.dto.BookDto;
+import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
+import com.example.database.mappers.Mapper;
+import com.example.database.repositories.AuthorRepository;
+import com.example.database.repositories.BookRepository;
+import com.example.database.services.BookImportService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Imports books from an upload of any size. The upload is read one line (i.e. one record) at a time, and every
+// CHUNK_SIZE valid records are written in their own transaction, so neither the upload nor the import as a whole is ever
+// held in memory or in one long transaction. A record that cannot be parsed or is invalid is rejected on its own, and
+// the rest of the upload is still imported.
+@Service
+@Timed("service.invocations")
+public class BookImportServiceImpl implements BookImportService {
+
+    private BookRepository bookRepository;
+
+    private AuthorRepository authorRepository;
+
+    private BookCountCache bookCountCache;
+
+    private BookTitleIndex bookTitleIndex;
+
+    private TransactionTemplate transactionTemplate;
+
+    private CacheManager cacheManager;
+
+    private ObjectReader bookReader;
+
+    private Mapper<Book, BookDto> bookMapper;
+
+    private MeterRegistry meterRegistry;
+
+    private static final int CHUNK_SIZE = 5000;
+
+    private static final int MAX_REPORTED_REJECTS = 100;
+
+    private static final int MAX_COLUMN_LENGTH = 255;
+
+    private static final int MAX_RECORD_LENGTH = 16 * MAX_COLUMN_LENGTH;
+
+    public BookImportServiceImpl(
+            BookRepository bookRepository,
+            AuthorRepository authorRepository,
+            BookCountCache bookCountCache,
+            BookTitleIndex bookTitleIndex,
+            PlatformTransactionManager transactionManager,
+            CacheManager cacheManager,
+            ObjectMapper objectMapper,
+            Mapper<Book, BookDto> bookMapper,
+            MeterRegistry meterRegistry) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.bookCountCache = bookCountCache;
+        this.bookTitleIndex = bookTitleIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheManager = cacheManager;
+        this.bookReader = objectMapper
+                .readerFor(BookDto.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.bookMapper = bookMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // CSV uploads start with a header row naming the columns (in any order): isbn and title, and optionally author_name
+    // and author_age. NDJSON uploads have one book per line, in the same JSON shape as the other endpoints. Authors are
+    // identified by name (any author ID in the upload is ignored): a book is attributed to the oldest author with that
+    // name, and an author that does not exist yet is created.
+    @Override
+    public ImportReport importBooks(Reader reader, Format format) {
+
+        ImportReport report = new ImportReport();
+
+        Map<String, Book> chunk = new LinkedHashMap<>();
+
+        Map<String, Long> chunkLines = new LinkedHashMap<>();
+
+        try (BufferedReader lines = new BufferedReader(reader)) {
+
+            Map<String, Integer> columns = format == Format.CSV ? readHeader(lines.readLine()) : null;
+            long lineNumber = format == Format.CSV ? 1 : 0;
+
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+
+                long recordLineNumber = lineNumber;
+
+                if (format == Format.CSV) {
+                    String nextLine;
+                    while (isInQuotedField(line) && line.length() <= MAX_RECORD_LENGTH
+                            && (nextLine = lines.readLine()) != null) {
+                        lineNumber++;
+                        line = line + "\n" + nextLine;
+                    }
+                }
+                // A quoted CSV field may contain line breaks (as in the titles written by GET /books/export), so a
+                // record continues on the next line for as long as a quoted field is open. A record that gets longer
+                // than any valid one could be (i.e. a stray quote) stops there and is rejected on its own.
+
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                report.setProcessed(report.getProcessed() + 1);
+
+                try {
+                    Book book = format == Format.CSV ? parseCsv(line, columns) : parseNdjson(line);
+
+                    chunkLines.put(book.getIsbn(), recordLineNumber);
+
+                    if (chunk.put(book.getIsbn(), book) != null) {
+                        report.setUpdated(report.getUpdated() + 1);
+                        meterRegistry.counter("books.import.records", "outcome", "updated").increment();
+                    }
+                    // A later record with the same ISBN replaces an earlier one, as if the records had been written
+                    // one after another, so the earlier one counts as created or updated and the later one as updated.
+                } catch (IllegalArgumentException e) {
+                    reject(report, recordLineNumber, e.getMessage());
+                }
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(chunk.values(), chunkLines.values(), report);
+                    chunk.clear();
+                    chunkLines.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (!chunk.isEmpty()) {
+            importChunk(chunk.values(), chunkLines.values(), report);
+        }
+
+        return report;
+    }
+
+    // A chunk that the database refuses (e.g. a constraint violation, or a COPY that fails) is rolled back as a whole,
+    // and each of its records is rejected with its line number. The chunks before it stay committed, and the import
+    // goes on with the next chunk, so the report still accounts for every record.
+    private void importChunk(Collection<Book> books, Collection<Long> lines, ImportReport report) {
+
+        long created;
+        try {
+            created = transactionTemplate.execute(status -> {
+                resolveAuthors(books);
+                books.forEach(book -> bookTitleIndex.put(book.getIsbn(), book.getTitle()));
+                return bookRepository.importBooks(books);
+            });
+        } catch (DataAccessException | TransactionException e) {
+            // The cause is not reported, since database messages may reveal the schema.
+            lines.forEach(line -> reject(report, line, "the database rejected the chunk of this record"));
+            return;
+        }
+
+        for (String cacheName : List.of(
+                CacheConfig.BOOKS, CacheConfig.BOOK_EXISTS, CacheConfig.AUTHORS, CacheConfig.AUTHOR_EXISTS)) {
+            cacheManager.getCache(cacheName).clear();
+        }
+        // The caches are cleared as soon as each chunk has committed, rather than once the whole import returns, so
+        // that they are not out of date while a long import runs, nor after an import that fails partway.
+
+        long updated = books.size() - created;
+
+        report.setCreated(report.getCreated() + created);
+        report.setUpdated(report.getUpdated() + updated);
+
+        bookCountCache.adjust(created);
+
+        meterRegistry.counter("books.import.records", "outcome", "created").increment(created);
+        meterRegistry.counter("books.import.records", "outcome", "updated").increment(updated);
+        // The counters show the progress of a long import while it runs (e.g. on /actuator/prometheus).
+    }
+
+    // Replaces the author of each book with an existing author of the same name, or with a new author, using one query
+    // for the whole chunk and one JDBC batch for the new authors.
+    private void resolveAuthors(Collection<Book> books) {
+
+        Set<String> names = books.stream()
+                .map(Book::getAuthor)
+                .filter(Objects::nonNull)
+                .map(Author::getName)
+                .collect(Collectors.toSet());
+
+        if (names.isEmpty()) {
+            return;
+        }
+
+        Map<String, Author> authorsByName = new HashMap<>();
+        authorRepository
+                .findByNameInOrderByIdAsc(names)
+                .forEach(author -> authorsByName.putIfAbsent(author.getName(), author));
+
+        List<Author> newAuthors = new ArrayList<>();
+
+        for (Book book : books) {
+
+            if (book.getAuthor() == null) {
+                continue;
+            }
+
+            Author author = authorsByName.get(book.getAuthor().getName());
+
+            if (author == null) {
+                author = book.getAuthor();
+                author.setId(null);
+                authorsByName.put(author.getName(), author);
+                newAuthors.add(author);
+            }
+
+            book.setAuthor(author);
+        }
+
+        authorRepository.saveAll(newAuthors);
+    }
+
+    private void reject(ImportReport report, long lineNumber, String reason) {
+
+        report.setRejected(report.getRejected() + 1);
+
+        if (report.getRejects().size() < MAX_REPORTED_REJECTS) {
+            report.getRejects().add(new ImportReport.Reject(lineNumber, reason));
+        }
+
+        meterRegistry.counter("books.import.records", "outcome", "rejected").increment();
+    }
+
+    // An invalid header rejects the whole upload, since none of its records could be read.
+    private static Map<String, Integer> readHeader(String header) {
+
+        if (header == null) {
+            throw new IllegalArgumentException("Missing CSV header");
+        }
+
+        List<String> names = parseCsvLine(header);
+
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(), i);
+        }
+
+        if (!columns.containsKey("isbn") || !columns.containsKey("title")) {
+            throw new IllegalArgumentException("The CSV header must name the isbn and title columns");
+        }
+
+        return columns;
+    }
+
+    private static Book parseCsv(String line, Map<String, Integer> columns) {
+
+        List<String> fields = parseCsvLine(line);
+
+        if (fields.size() != columns.size()) {
+            throw new IllegalArgumentException(
+                    "Expected " + columns.size() + " fields but found " + fields.size());
+        }
+
+        String authorName = field(fields, columns, "author_name");
+        String authorAge = field(fields, columns, "author_age");
+
+        Author author = null;
+        if (authorName != null) {
+            try {
+                author = Author.builder()
+                        .name(authorName)
+                        .age(authorAge == null ? null : Integer.valueOf(authorAge.trim()))
+                        .build();
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("author_age is not a whole number");
+            }
+        }
+
+        return validate(Book.builder()
+                .isbn(field(fields, columns, "isbn"))
+                .title(field(fields, columns, "title"))
+                .author(author)
+                .build());
+    }
+
+    // An empty field is read as null.
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+
+        Integer column = columns.get(name);
+
+        if (column == null || fields.get(column).isEmpty()) {
+            return null;
+        }
+
+        return fields.get(column);
+    }
+
+    // Whether the line ends inside a quoted field, i.e. has an odd number of quotes (an escaped quote counts twice).
+    private static boolean isInQuotedField(String line) {
+        return line.chars().filter(c -> c == '"').count() % 2 == 1;
+    }
+
+    // Splits one CSV record into its fields (RFC 4180). Line breaks inside quoted fields are read as \n.
+    private static List<String> parseCsvLine(String line) {
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+
+        fields.add(field.toString());
+
+        return fields;
+    }
+
+    private Book parseNdjson(String line) {
+        try {
+            return validate(bookMapper.mapFrom(bookReader.readValue(line)));
+            // As in the controllers, the record is read into a DTO, so that it can only set the fields that a request
+            // may set (e.g. not the row version).
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static Book validate(Book book) {
+
+        if (book.getIsbn() == null || book.getIsbn().isBlank()) {
+            throw new IllegalArgumentException("isbn is required");
+        }
+
+        if (book.getIsbn().length() > MAX_COLUMN_LENGTH || (book.getTitle() != null
+                && book.getTitle().length() > MAX_COLUMN_LENGTH)) {
+            throw new IllegalArgumentException("isbn and title must not be longer than " + MAX_COLUMN_LENGTH);
+        }
+
+        if (book.getAuthor() != null && (book.getAuthor().getName() == null || book.getAuthor().getName().isBlank())) {
+            throw new IllegalArgumentException("author name is required");
+        }
+
+        if (book.getAuthor() != null && book.getAuthor().getName().length() > MAX_COLUMN_LENGTH) {
+            throw new IllegalArgumentException("author name must not be longer than " + MAX_COLUMN_LENGTH);
+        }
+
+        return book;
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.database.services.impl;
+
+import com.example.database.config.CacheConfig;
+import com.example.database.domain.BookPatchStatus;
+import com.example.database.repositories.BookRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Write-behind (group commit) for title patches: instead of one transaction (and one commit, i.e. one fsync) per patch,
+// patches are queued in memory and written in batches, many patches per transaction and JDBC round trip. Repeated
+// patches of the same ISBN that are still queued collapse into one, the last title winning. A batch is written once
+// books.write-behind.batch-size distinct ISBNs are queued, or every books.write-behind.flush-interval otherwise.
+//
+// Semantics, compared to a synchronous PATCH:
+// - Durability: an accepted patch only lives in the memory of this instance until its batch commits. Patches queued when
+//   the process crashes (at most one flush interval and one batch) are lost; a graceful shutdown writes them first. A
+//   client that needs to know polls the status of its token, which is only APPLIED once the batch has committed.
+// - Backpressure: at most books.write-behind.capacity distinct ISBNs are queued. A patch of an ISBN that is already
+//   queued is always accepted (it takes no extra room); any other patch is rejected while the queue is full, and the
+//   controller answers 503 with Retry-After instead of letting the queue (and the loss window) grow.
+// - Consistency: reads see a patch once its batch has committed, not when it is accepted. A synchronous write of the same
+//   book made while a patch is queued is overwritten when the batch is written (last written wins).
+@Component
+public class BookPatchQueue {
+
+    private BookRepository bookRepository;
+
+    private BookTitleIndex bookTitleIndex;
+
+    private Cache books;
+
+    private TransactionTemplate transactionTemplate;
+
+    private MeterRegistry meterRegistry;
+
+    private int capacity;
+
+    private int batchSize;
+
+    private Duration flushInterval;
+
+    private LinkedHashMap<String, PendingPatch> pending = new LinkedHashMap<>();
+    // Guarded by this queue's monitor, which enqueue, the flusher and stop synchronise on. Insertion order makes the
+    // oldest patches the first to be written.
+
+    private ConcurrentMap<String, BookPatchStatus> queued = new ConcurrentHashMap<>();
+    // The statuses of the patches that are not written yet, one per accepted token. They are never evicted, since a
+    // client polling a live patch must find it, and each one leaves this map once its batch has been written.
+
+    private com.github.benmanes.caffeine.cache.Cache<String, BookPatchStatus> statuses;
+
+    private boolean running;
+
+    private Thread flusher;
+
+    private static final int MAX_STATUSES = 100_000;
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    public BookPatchQueue(
+            BookRepository bookRepository,
+            BookTitleIndex bookTitleIndex,
+            CacheManager cacheManager,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${books.write-behind.capacity:10000}") int capacity,
+            @Value("${books.write-behind.batch-size:500}") int batchSize,
+            @Value("${books.write-behind.flush-interval:50ms}") Duration flushInterval,
+            @Value("${books.write-behind.status-retention:10m}") Duration statusRetention) {
+        this.bookRepository = bookRepository;
+        this.bookTitleIndex = bookTitleIndex;
+        this.books = cacheManager.getCache(CacheConfig.BOOKS);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.statuses = Caffeine.newBuilder()
+                .expireAfterWrite(statusRetention)
+                .maximumSize(MAX_STATUSES)
+                .build();
+        // A final status is kept for a while after its patch was written, so that a client polling slowly still finds
+        // it. Only these are evicted by size; the statuses of queued patches live in the queued map until then.
+
+        meterRegistry.gauge("books.write-behind.pending", this, BookPatchQueue::size);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+
+        running = true;
+
+        flusher = new Thread(this::flushLoop, "book-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Runs before the repositories and the data source are closed (this queue depends on them), so the patches that are
+    // still queued are written rather than lost.
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+
+        flusher.join(SHUTDOWN_TIMEOUT.toMillis());
+    }
+
+    // Returns the status of the accepted patch, or empty when the queue is full (or shutting down). A null title keeps
+    // the current title, as with a synchronous patch.
+    public synchronized Optional<BookPatchStatus> enqueue(String isbn, String title) {
+
+        PendingPatch patch = pending.get(isbn);
+
+        if (patch == null) {
+
+            if (!running || pending.size() >= capacity) {
+                meterRegistry.counter("books.write-behind.patches", "outcome", "rejected").increment();
+                return Optional.empty();
+            }
+
+            patch = new PendingPatch();
+            pending.put(isbn, patch);
+            meterRegistry.counter("books.write-behind.patches", "outcome", "queued").increment();
+
+        } else {
+            meterRegistry.counter("books.write-behind.patches", "outcome", "collapsed").increment();
+        }
+
+        if (title != null) {
+            patch.title = title;
+        }
+
+        BookPatchStatus status = new BookPatchStatus(UUID.randomUUID().toString(), isbn, BookPatchStatus.State.QUEUED);
+        patch.tokens.add(status.getToken());
+        queued.put(status.getToken(), status);
+
+        if (pending.size() >= batchSize) {
+            notifyAll();
+        }
+        // A full batch is written straight away rather than at the end of the flush interval.
+
+        return Optional.of(status);
+    }
+
+    public Optional<BookPatchStatus> getStatus(String token) {
+        BookPatchStatus status = queued.get(token);
+
+        return Optional.ofNullable(status != null ? status : statuses.getIfPresent(token));
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    private void flushLoop() {
+
+        while (true) {
+
+            Map<String, PendingPatch> batch;
+
+            synchronized (this) {
+
+                if (running && pending.size() < batchSize) {
+                    try {
+                        wait(flushInterval.toMillis());
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                if (!running && pending.isEmpty()) {
+                    return;
+                }
+
+                batch = take();
+            }
+            // The batch is written without holding the monitor, so that patches keep being accepted meanwhile.
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+    private Map<String, PendingPatch> take() {
+
+        Map<String, PendingPatch> batch = new LinkedHashMap<>();
+
+        Iterator<Map.Entry<String, PendingPatch>> entries = pending.entrySet().iterator();
+        while (entries.hasNext() && batch.size() < batchSize) {
+            Map.Entry<String, PendingPatch> entry = entries.next();
+            batch.put(entry.getKey(), entry.getValue());
+            entries.remove();
+        }
+        // A patch of an ISBN taken here starts a new pending patch, which is written by a later batch.
+
+        return batch;
+    }
+
+    private void flush(Map<String, PendingPatch> batch) {
+
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            batch.forEach((isbn, patch) -> {
+                try {
+                    write(Map.of(isbn, patch));
+                } catch (RuntimeException patchException) {
+                    complete(patch, isbn, BookPatchStatus.State.FAILED);
+                }
+            });
+        }
+        // A batch fails as a whole (e.g. when one of its titles is too long), so its patches are then written one at a
+        // time, and only the bad patch fails.
+
+        meterRegistry.counter("books.write-behind.flushes").increment();
+    }
+
+    private void write(Map<String, PendingPatch> batch) {
+
+        Map<String, String> titles = new LinkedHashMap<>();
+        batch.forEach((isbn, patch) -> titles.put(isbn, patch.title));
+
+        Set<String> patched = transactionTemplate.execute(status -> bookRepository.patchTitles(titles));
+
+        batch.forEach((isbn, patch) -> {
+            if (patched.contains(isbn)) {
+                books.evict(isbn);
+                if (patch.title != null) {
+                    bookTitleIndex.put(isbn, patch.title);
+                }
+                complete(patch, isbn, BookPatchStatus.State.APPLIED);
+            } else {
+                complete(patch, isbn, BookPatchStatus.State.NOT_FOUND);
+            }
+        });
+        // The cache and the title index are only updated once the batch has committed, as for a synchronous patch.
+    }
+
+    private void complete(PendingPatch patch, String isbn, BookPatchStatus.State state) {
+
+        for (String token : patch.tokens) {
+            statuses.put(token, new BookPatchStatus(token, isbn, state));
+            queued.remove(token);
+        }
+        // Every patch that was collapsed into this one shares its outcome. The final status is stored before the queued
+        // one is removed, so that a concurrent getStatus always finds one of them.
+
+        meterRegistry.counter("books.write-behind.patches", "outcome", state.name().toLowerCase())
+                .increment(patch.tokens.size());
+    }
+
+    private static class PendingPatch {
+
+        private String title;
+
+        private List<String> tokens = new ArrayList<>();
+    }
+}
@@ -1,35 +1,266 @@
 package com.example.database.services.impl;
 
+import com.example.database.config.CacheConfig;
+import com.example.database.domain.BookPatchStatus;
+import com.example.database.domain.UpsertStatus;
+import com.example.database.domain.entities.Author;
 import com.example.database.domain.entities.Book;
+import com.example.database.domain.projections.BookExportRow;
+import com.example.database.domain.projections.BookTitle;
+import com.example.database.domain.projections.BookVersion;
+import com.example.database.repositories.AuthorRepository;
 import com.example.database.repositories.BookRepository;
 import com.example.database.services.BookService;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @Service
+@Timed("service.invocations")
 public class BookServiceImpl implements BookService {
 
     private BookRepository bookRepository;
 
-    public BookServiceImpl(BookRepository bookRepository) {
+    private AuthorRepository authorRepository;
+
+    private EntityManager entityManager;
+
+    private BookCountCache bookCountCache;
+
+    private BookTitleIndex bookTitleIndex;
+
+    private BookPatchQueue bookPatchQueue;
+
+    private SingleFlight<String, Optional<Book>> bookLoads;
+
+    private static final int BATCH_SIZE = 500;
+    // Matches spring.jpa.properties.hibernate.jdbc.batch_size, so that each chunk is flushed as one JDBC batch.
+
+    public BookServiceImpl(
+            BookRepository bookRepository,
+            AuthorRepository authorRepository,
+            EntityManager entityManager,
+            BookCountCache bookCountCache,
+            BookTitleIndex bookTitleIndex,
+            BookPatchQueue bookPatchQueue,
+            MeterRegistry meterRegistry) {
         this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.entityManager = entityManager;
+        this.bookCountCache = bookCountCache;
+        this.bookTitleIndex = bookTitleIndex;
+        this.bookPatchQueue = bookPatchQueue;
+        this.bookLoads = new SingleFlight<>("books", meterRegistry);
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = {CacheConfig.BOOKS, CacheConfig.BOOK_EXISTS}, key = "#isbn"),
+            @CacheEvict(cacheNames = {CacheConfig.BOOKS, CacheConfig.AUTHORS, CacheConfig.AUTHOR_EXISTS},
+                    allEntries = true, condition = "#book.author != null")
+    })
+    @Transactional
     public Book createUpdateBook(String isbn, Book book) {
 
+        upsertBook(isbn, book);
+
+        return book;
+        // Merging (i.e. save) a book deserialised from a request would fail the optimistic lock check whenever the row has
+        // been updated before, since the request does not carry the row version. The upsert does not need it.
+    }
+
+    // Writing a book with an embedded author also writes the author, which every cached book by that author embeds.
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = {CacheConfig.BOOKS, CacheConfig.BOOK_EXISTS}, key = "#isbn"),
+            @CacheEvict(cacheNames = {CacheConfig.BOOKS, CacheConfig.AUTHORS, CacheConfig.AUTHOR_EXISTS},
+                    allEntries = true, condition = "#book.author != null")
+    })
+    @Transactional
+    public UpsertStatus upsertBook(String isbn, Book book) {
+
+        book.setIsbn(isbn);
+
+        if (book.getAuthor() != null) {
+
+            Map<Long, Author> existingAuthors = new HashMap<>();
+            if (book.getAuthor().getId() != null) {
+                authorRepository.findById(book.getAuthor().getId())
+                        .ifPresent(existingAuthor -> existingAuthors.put(existingAuthor.getId(), existingAuthor));
+            }
+
+            book.setAuthor(mergeAuthor(book.getAuthor(), existingAuthors));
+        }
+        // The native upsert only writes the books table, so the author is written first (as the cascade would have
+        // done) to obtain its ID. Hibernate flushes the author before running the native statement.
+
+        UpsertStatus status = bookRepository.upsert(book);
+
+        if (status == UpsertStatus.CREATED) {
+            bookCountCache.adjust(1);
+        }
+
+        bookTitleIndex.put(isbn, book.getTitle());
+
+        return status;
+    }
+
+    // Links the book to an existing author by ID only. getReference returns an uninitialised proxy (as getReferenceById
+    // does on a JpaRepository), of which the upsert only reads the ID, so the authors table is neither read nor
+    // written, and the foreign key constraint rejects an author that does not exist (as a
+    // DataIntegrityViolationException). Concurrent writes of books by the same author no longer queue up on the lock of
+    // the author row, since checking a foreign key only takes a shared lock. Only the book is evicted, as the author is
+    // unchanged.
+    @Override
+    @CacheEvict(cacheNames = {CacheConfig.BOOKS, CacheConfig.BOOK_EXISTS}, key = "#isbn")
+    @Transactional
+    public UpsertStatus upsertBook(String isbn, Book book, Long authorId) {
+
         book.setIsbn(isbn);
+        book.setAuthor(entityManager.getReference(Author.class, authorId));
+
+        UpsertStatus status = bookRepository.upsert(book);
+
+        if (status == UpsertStatus.CREATED) {
+            bookCountCache.adjust(1);
+        }
+
+        bookTitleIndex.put(isbn, book.getTitle());
+
+        return status;
+    }
+
+    @Override
+    @CacheEvict(
+            cacheNames = {CacheConfig.BOOKS, CacheConfig.BOOK_EXISTS, CacheConfig.AUTHORS, CacheConfig.AUTHOR_EXISTS},
+            allEntries = true)
+    @Transactional
+    public Map<String, UpsertStatus> createUpdateBooks(List<Book> books) {
+
+        Map<String, Book> booksByIsbn = new LinkedHashMap<>();
+        books.forEach(book -> booksByIsbn.put(book.getIsbn(), book));
+        // A later book with the same ISBN replaces an earlier one, as if the books had been written one after another.
+
+        Map<String, UpsertStatus> statuses = new LinkedHashMap<>();
+
+        List<Book> chunk = new ArrayList<>(BATCH_SIZE);
+
+        for (Book book : booksByIsbn.values()) {
+            chunk.add(book);
+
+            if (chunk.size() == BATCH_SIZE) {
+                createUpdateChunk(chunk, statuses);
+                chunk.clear();
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            createUpdateChunk(chunk, statuses);
+        }
+
+        bookCountCache.adjust(statuses.values().stream().filter(UpsertStatus.CREATED::equals).count());
+
+        return statuses;
+    }
+
+    // Upserts one chunk of books with a constant number of statements: one SELECT for the existing books, one SELECT for
+    // the referenced authors, and one JDBC batch each for the inserts and updates. Unlike save (i.e. merge), this never
+    // issues a SELECT per book.
+    private void createUpdateChunk(List<Book> chunk, Map<String, UpsertStatus> statuses) {
+
+        Map<String, Book> existingBooks = new HashMap<>();
+        bookRepository
+                .findAllById(chunk.stream().map(Book::getIsbn).toList())
+                .forEach(existingBook -> existingBooks.put(existingBook.getIsbn(), existingBook));
 
-        return bookRepository.save(book);
+        Map<Long, Author> existingAuthors = new HashMap<>();
+        authorRepository
+                .findAllById(chunk.stream()
+                        .map(Book::getAuthor)
+                        .filter(author -> author != null && author.getId() != null)
+                        .map(Author::getId)
+                        .collect(Collectors.toSet()))
+                .forEach(existingAuthor -> existingAuthors.put(existingAuthor.getId(), existingAuthor));
+
+        for (Book book : chunk) {
+
+            Author author = book.getAuthor() == null ? null : mergeAuthor(book.getAuthor(), existingAuthors);
+
+            Book existingBook = existingBooks.get(book.getIsbn());
+
+            bookTitleIndex.put(book.getIsbn(), book.getTitle());
+
+            if (existingBook == null) {
+                book.setAuthor(author);
+                entityManager.persist(book);
+                statuses.put(book.getIsbn(), UpsertStatus.CREATED);
+            } else {
+                existingBook.setTitle(book.getTitle());
+                existingBook.setAuthor(author);
+                statuses.put(book.getIsbn(), UpsertStatus.UPDATED);
+                // The existing book is managed, so the changes are written by dirty checking when the chunk is flushed.
+            }
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        // Clearing the persistence context after each chunk keeps memory flat however many books are in the request.
+    }
+
+    // Applies the same semantics as the cascaded merge of a single book write: an author whose ID exists is updated,
+    // and any other author is created. Books in the chunk that reference the same author ID share one instance, since
+    // a created author is added to the existing authors under the ID it was requested with.
+    private Author mergeAuthor(Author author, Map<Long, Author> existingAuthors) {
+
+        Long requestedId = author.getId();
+
+        Author existingAuthor = requestedId == null ? null : existingAuthors.get(requestedId);
+
+        if (existingAuthor == null) {
+            author.setId(null);
+            entityManager.persist(author);
+            if (requestedId != null) {
+                existingAuthors.put(requestedId, author);
+            }
+            return author;
+        }
+
+        existingAuthor.setName(author.getName());
+        existingAuthor.setAge(author.getAge());
+
+        return existingAuthor;
     }
 
+    // The reads run in read-only transactions, which are routed to the read replicas when there are any (see
+    // DataSourceConfig). Hibernate also skips dirty checking at the end of a read-only transaction.
     @Override
+    @Transactional(readOnly = true)
     public List<Book> getBooks() {
         return StreamSupport
                 .stream(bookRepository.findAll().spliterator(), false)
@@ -37,37 +268,179 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Book> getBooks(Pageable pageable) {
         return bookRepository.findAll(pageable);
     }
 
+    // The total is counted as for any page, except that PageableExecutionUtils skips the COUNT query when the page itself
+    // shows the total (e.g. a first page with fewer books than the page size).
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getBooks(Set<String> fields, Pageable pageable) {
+        return PageableExecutionUtils.getPage(
+                bookRepository.findAllProjected(fields, pageable), pageable, bookRepository::count);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Book> getBooksWithEstimatedCount(Pageable pageable) {
+
+        Slice<Book> books = bookRepository.findAllBy(pageable);
+
+        long knownMinimum = pageable.getOffset() + books.getNumberOfElements() + (books.hasNext() ? 1 : 0);
+        // The slice itself proves that at least this many books exist, and on the last page it gives the exact total.
+
+        long total = books.hasNext() ? Math.max(bookCountCache.get(), knownMinimum) : knownMinimum;
+
+        return new PageImpl<>(books.getContent(), pageable, total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> getBookSlice(Pageable pageable) {
+        return bookRepository.findAllBy(pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> getBooks(String afterIsbn, int size) {
+
+        Limit limit = Limit.of(size + 1);
+        // One extra row is fetched to find out whether there is a next page without running a COUNT query.
+
+        List<Book> books = afterIsbn == null || afterIsbn.isEmpty()
+                ? bookRepository.findAllByOrderByIsbnAsc(limit)
+                : bookRepository.findByIsbnGreaterThanOrderByIsbnAsc(afterIsbn, limit);
+
+        boolean hasNext = books.size() > size;
+
+        return new SliceImpl<>(hasNext ? books.subList(0, size) : books, PageRequest.ofSize(size), hasNext);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<BookTitle> getBooksByAuthor(Long authorId, String afterIsbn, int size) {
+
+        List<BookTitle> books = bookRepository.findByAuthorId(authorId, afterIsbn, Limit.of(size + 1));
+
+        boolean hasNext = books.size() > size;
+
+        return new SliceImpl<>(hasNext ? books.subList(0, size) : books, PageRequest.ofSize(size), hasNext);
+    }
+    // As getBooks(afterIsbn, size), with one extra row to find out whether there is a next page.
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBooks(Consumer<BookExportRow> consumer) {
+        try (Stream<BookExportRow> rows = bookRepository.streamExportRows()) {
+            rows.forEach(consumer);
+        }
+    }
+    // The rows are projections rather than entities, so, unlike streamAuthors, there is no persistence context to clear.
+
+    // The index ranks and pages the matching ISBNs in memory, so the database is only asked for the books on the page,
+    // by primary key. findAllById returns them in no particular order, hence the reordering by rank.
     @Override
+    @Transactional(readOnly = true)
+    public Page<Book> searchBooks(String query, Pageable pageable) {
+
+        Page<String> isbns = bookTitleIndex.search(query, pageable);
+
+        Map<String, Book> books = new HashMap<>();
+        bookRepository.findAllById(isbns.getContent()).forEach(book -> books.put(book.getIsbn(), book));
+
+        List<Book> content = isbns.getContent().stream().map(books::get).filter(Objects::nonNull).toList();
+
+        return new PageImpl<>(content, pageable, isbns.getTotalElements());
+    }
+
+    // For an Optional return type, the cache stores the book itself; unless keeps missing books out of the cache.
+    // Unlike the other reads, the cached reads and the version checks run on the primary: a replica that lags behind
+    // would have the cache keep a book (or the absence of a book just created) that is already out of date until it
+    // expires, and the ETag of a book that has already been replaced would still answer If-None-Match with a 304.
+    @Override
+    @Cacheable(cacheNames = CacheConfig.BOOKS, key = "#isbn", unless = "#result == null")
+    @Transactional
     public Optional<Book> getBook(String isbn) {
 
-        return bookRepository.findById(isbn);
+        return bookLoads.load(isbn, () -> bookRepository.findById(isbn)).map(BookServiceImpl::detachedCopy);
+        // Concurrent cache misses for the same ISBN (e.g. a trending book right after it was evicted) share a single
+        // SELECT. The callers that wait never touch their own transaction's connection, which is only acquired lazily.
+        // Each caller gets its own copy of the loaded book, so that neither the cache nor the other callers share the
+        // entity managed by the Session of the caller that loaded it.
     }
 
+    // A copy of the book and its author that belongs to no Session, so it can be cached and read from any thread.
+    private static Book detachedCopy(Book book) {
+
+        Author author = book.getAuthor();
+
+        return book.toBuilder().author(author == null ? null : author.toBuilder().build()).build();
+    }
+
+    // Not cached: the cache holds whole books, and a projection is already a single narrow query.
     @Override
-    public Book patchBook(String isbn, Book book) {
+    @Transactional(readOnly = true)
+    public Optional<Map<String, Object>> getBook(String isbn, Set<String> fields) {
+        return bookRepository.findProjectedById(isbn, fields);
+    }
 
-        book.setIsbn(isbn);
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#isbn")
+    public Optional<Book> patchBook(String isbn, Book book) {
 
-        return bookRepository.findById(isbn).map(existingBook -> {
-            Optional.ofNullable(book.getTitle()).ifPresent(existingBook::setTitle);
-            // Optional.ofNullable(book.getAuthor()).ifPresent(existingBook::setAuthor);
+        Optional<Book> patchedBook = bookRepository.patch(isbn, book);
+        // Only the title is patched; the author of an existing book is left unchanged.
 
-            return bookRepository.save(existingBook);
+        patchedBook.ifPresent(patched -> bookTitleIndex.put(isbn, patched.getTitle()));
 
-        }).orElseThrow(() -> new RuntimeException("Book does not exist"));
+        return patchedBook;
     }
 
+    // Nothing is written (or evicted) here: the patch is queued, and BookPatchQueue writes it with others in a later
+    // transaction. An empty result means that the queue is full.
     @Override
+    public Optional<BookPatchStatus> patchBookAsync(String isbn, Book book) {
+
+        return bookPatchQueue.enqueue(isbn, book.getTitle());
+    }
+
+    @Override
+    public Optional<BookPatchStatus> getPatchStatus(String token) {
+
+        return bookPatchQueue.getStatus(token);
+    }
+
+    // Deleting a book cascades to its author (cascade = ALL), so the cached authors are evicted too.
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = {CacheConfig.BOOKS, CacheConfig.BOOK_EXISTS}, key = "#isbn"),
+            @CacheEvict(cacheNames = {CacheConfig.AUTHORS, CacheConfig.AUTHOR_EXISTS}, allEntries = true)
+    })
+    @Transactional
     public void deleteBook(String isbn) {
 
+        boolean exists = bookRepository.existsById(isbn);
+
         bookRepository.deleteById(isbn);
+
+        if (exists) {
+            bookCountCache.adjust(-1);
+            bookTitleIndex.remove(isbn);
+        }
+    }
+
+    @Override
+    @Transactional
+    public Optional<BookVersion> getBookVersion(String isbn) {
+
+        return bookRepository.findVersionByIsbn(isbn);
     }
 
     @Override
+    @Cacheable(cacheNames = CacheConfig.BOOK_EXISTS, key = "#isbn")
+    @Transactional
     public boolean isPresent(String isbn) {
 
         return bookRepository.existsById(isbn);
@@ -0,0 +1,273 @@
+package com.example.database.services.impl;
+
+import com.example.database.domain.projections.BookTitle;
+import com.example.database.repositories.BookRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+// An in-memory inverted index over the titles of the books, for title search without a database index (a LIKE '%x%'
+// query scans the whole table). Titles are split into lower-case tokens without accents, and each token maps to the
+// ISBNs of the books whose title contains it. The tokens are also kept sorted, so the tokens starting with a prefix are
+// one contiguous range.
+//
+// The index is loaded from the database once the application has started, and BookServiceImpl (and the import) keep it
+// up to date on each write, once the write has been committed. Like BookCountCache, it only sees the writes made by
+// this instance; writes made by other instances or directly in the database are picked up on restart.
+@Component
+public class BookTitleIndex {
+
+    private BookRepository bookRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ConcurrentMap<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+    private ConcurrentSkipListSet<String> tokens = new ConcurrentSkipListSet<>();
+    // A token is added to (and removed from) the sorted tokens while its postings are locked by compute, and a token
+    // without postings is skipped by the search, so the two never disagree in a way that matters.
+
+    private ConcurrentMap<String, String> titles = new ConcurrentHashMap<>();
+    // The normalised title of each indexed book, i.e. its tokens joined by spaces. All changes to the index go through
+    // compute on this map, which serialises the changes to each book.
+
+    private Set<String> removedWhileLoading = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean loading;
+
+    private static final int EXACT_TOKEN_SCORE = 3;
+
+    private static final int PREFIX_TOKEN_SCORE = 1;
+
+    private static final int TITLE_PREFIX_SCORE = 1;
+
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private static final Comparator<Match> RANKING = Comparator
+            .comparingInt((Match match) -> match.score).reversed()
+            .thenComparingInt(match -> match.title.length())
+            .thenComparing(match -> match.isbn);
+
+    public BookTitleIndex(BookRepository bookRepository, PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Runs in a read-write transaction so that the titles are read from the primary database, not a lagging replica.
+    // Books written while the index is loading are indexed by those writes, which the load does not overwrite.
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+
+        loading = true;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<BookTitle> books = bookRepository.streamTitles()) {
+                books.forEach(book -> titles.compute(book.getIsbn(), (isbn, current) ->
+                        current != null || removedWhileLoading.contains(isbn) ? current : index(isbn, book.getTitle())));
+            }
+        });
+
+        loading = false;
+        removedWhileLoading.clear();
+    }
+
+    public void put(String isbn, String title) {
+        afterCommit(() -> titles.compute(isbn, (key, current) -> {
+            unindex(key, current);
+            return index(key, title);
+        }));
+    }
+
+    public void remove(String isbn) {
+        afterCommit(() -> {
+            if (loading) {
+                removedWhileLoading.add(isbn);
+            }
+
+            titles.computeIfPresent(isbn, (key, current) -> {
+                unindex(key, current);
+                return null;
+            });
+        });
+    }
+
+    // Returns a page of the ISBNs of the books whose title contains a token starting with each token of the query, best
+    // match first. A token that matches exactly scores more than one that only matches its prefix, and a title that
+    // starts with the whole query scores a little more. Shorter titles (i.e. closer matches) rank first among equal
+    // scores. Only the best offset + size matches are kept (in a bounded heap), so a query that matches much of the
+    // catalog costs O(n log k) rather than a sort of every match. A query token shorter than MIN_PREFIX_LENGTH only
+    // matches whole tokens, since as a prefix (e.g. "s") it would match a large part of the catalog.
+    public Page<String> search(String query, Pageable pageable) {
+
+        List<String> terms = tokenize(query).distinct().toList();
+
+        if (terms.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        Map<String, Integer> scores = null;
+
+        for (String term : terms) {
+
+            Map<String, Integer> termScores = new HashMap<>();
+
+            matchingTokens(term).forEach(token -> {
+                int score = token.equals(term) ? EXACT_TOKEN_SCORE : PREFIX_TOKEN_SCORE;
+                postings.getOrDefault(token, Set.of()).forEach(isbn -> termScores.merge(isbn, score, Math::max));
+            });
+
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((isbn, score) -> score + termScores.get(isbn));
+            }
+            // Every term must match, so the candidates can only shrink.
+
+            if (scores.isEmpty()) {
+                return Page.empty(pageable);
+            }
+        }
+
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+
+        if (offset >= scores.size()) {
+            return new PageImpl<>(List.of(), pageable, scores.size());
+        }
+
+        int limit = pageable.isPaged() ? (int) Math.min(offset + pageable.getPageSize(), scores.size()) : scores.size();
+
+        String normalisedQuery = String.join(" ", terms);
+
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        // The worst of the best matches so far is at the head, where the next better match replaces it.
+
+        scores.forEach((isbn, score) -> {
+            String title = titles.getOrDefault(isbn, "");
+            best.add(new Match(isbn, title.startsWith(normalisedQuery) ? score + TITLE_PREFIX_SCORE : score, title));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+
+        List<String> isbns = best.stream()
+                .sorted(RANKING)
+                .skip(offset)
+                .map(match -> match.isbn)
+                .toList();
+
+        return new PageImpl<>(isbns, pageable, scores.size());
+    }
+
+    private Set<String> matchingTokens(String term) {
+
+        if (term.length() < MIN_PREFIX_LENGTH) {
+            return tokens.contains(term) ? Set.of(term) : Set.of();
+        }
+
+        return tokens.subSet(term, true, term + Character.MAX_VALUE, true);
+    }
+
+    private String index(String isbn, String title) {
+
+        String normalisedTitle = String.join(" ", tokenize(title).toList());
+
+        split(normalisedTitle).forEach(token -> postings.compute(token, (key, isbns) -> {
+            if (isbns == null) {
+                isbns = ConcurrentHashMap.newKeySet();
+                tokens.add(key);
+            }
+            isbns.add(isbn);
+            return isbns;
+        }));
+
+        return normalisedTitle;
+    }
+
+    private void unindex(String isbn, String normalisedTitle) {
+
+        if (normalisedTitle == null) {
+            return;
+        }
+
+        split(normalisedTitle).forEach(token -> postings.computeIfPresent(token, (key, isbns) -> {
+            isbns.remove(isbn);
+            if (isbns.isEmpty()) {
+                tokens.remove(key);
+                return null;
+            }
+            return isbns;
+        }));
+    }
+
+    private static Stream<String> split(String normalisedTitle) {
+        return normalisedTitle.isEmpty() ? Stream.empty() : Arrays.stream(normalisedTitle.split(" ")).distinct();
+    }
+
+    // Splits text into lower-case tokens of letters and digits, without accents (so "Émile" matches "emile").
+    private static Stream<String> tokenize(String text) {
+
+        if (text == null) {
+            return Stream.empty();
+        }
+
+        String normalisedText = Normalizer
+                .normalize(text, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+
+        return Arrays.stream(normalisedText.split("[^\\p{L}\\p{N}]+")).filter(token -> !token.isEmpty());
+    }
+
+    // Changes made in a transaction are applied once it commits, so that a rolled back write never reaches the index.
+    private static void afterCommit(Runnable change) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    private static class Match {
+
+        private final String isbn;
+
+        private final int score;
+
+        private final String title;
+
+        private Match(String isbn, int score, String title) {
+            this.isbn = isbn;
+            this.score = score;
+            this.title = title;
+        }
+    }
+}
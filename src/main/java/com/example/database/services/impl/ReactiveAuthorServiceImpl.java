@@ -0,0 +1,22 @@
+package com.example.database.services.impl;
+
+import com.example.database.domain.entities.Author;
+import com.example.database.repositories.ReactiveAuthorRepository;
+import com.example.database.services.ReactiveAuthorService;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+@Service
+public class ReactiveAuthorServiceImpl implements ReactiveAuthorService {
+
+    private ReactiveAuthorRepository reactiveAuthorRepository;
+
+    public ReactiveAuthorServiceImpl(ReactiveAuthorRepository reactiveAuthorRepository) {
+        this.reactiveAuthorRepository = reactiveAuthorRepository;
+    }
+
+    @Override
+    public Flux<Author> getAuthors() {
+        return reactiveAuthorRepository.findAll();
+    }
+}
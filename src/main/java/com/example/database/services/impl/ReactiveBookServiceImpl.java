@@ -0,0 +1,30 @@
+package com.example.database.services.impl;
+
+import com.example.database.domain.entities.Book;
+import com.example.database.repositories.ReactiveBookRepository;
+import com.example.database.services.ReactiveBookService;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// The reactive read path. Books are still written through BookServiceImpl, so the caches of that service are not used
+// here; every read goes to the database.
+@Service
+public class ReactiveBookServiceImpl implements ReactiveBookService {
+
+    private ReactiveBookRepository reactiveBookRepository;
+
+    public ReactiveBookServiceImpl(ReactiveBookRepository reactiveBookRepository) {
+        this.reactiveBookRepository = reactiveBookRepository;
+    }
+
+    @Override
+    public Flux<Book> getBooks() {
+        return reactiveBookRepository.findAll();
+    }
+
+    @Override
+    public Mono<Book> getBook(String isbn) {
+        return reactiveBookRepository.findById(isbn);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.database.services.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+// Coalesces concurrent loads of the same key: the first caller (the leader) runs the load, and every caller that asks
+// for the same key while that load is in flight waits for, and shares, its result instead of running its own. Nothing
+// is locked while a load runs; callers only race on a single putIfAbsent to decide who leads. Once the load completes
+// the key is released, so a result is never shared with callers that arrive afterwards (that is the cache's job).
+final class SingleFlight<K, V> {
+
+    private ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter loads;
+
+    private Counter coalesced;
+
+    SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.loads = meterRegistry.counter("singleflight.loads", "name", name);
+        this.coalesced = meterRegistry.counter("singleflight.coalesced", "name", name);
+        // The ratio of coalesced to loads shows how much of a thundering herd was absorbed (e.g. on
+        // /actuator/prometheus).
+    }
+
+    V load(K key, Supplier<V> loader) {
+
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        loads.increment();
+
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+        // Removing by key and value only releases this flight, never a newer one started after it completed. A failed
+        // load is shared too, so a herd against a failing database produces one error per flight, not per caller.
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        // join wraps the leader's exception, which is unwrapped so that followers see the same exception type as the
+        // leader (e.g. a DataAccessException).
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.database.config;
+
+import com.example.database.TestData;
+import com.example.database.domain.entities.Book;
+import com.example.database.services.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs against two H2 databases: the primary (spring.datasource.url) and a replica. H2 does not replicate, so the tests
+// can tell from the rows they find which database a query went to. A second replica that does not exist checks that an
+// unavailable replica is skipped.
+@SpringBootTest(properties = {
+        "datasource.replicas[0].url=" + ReadWriteRoutingIntegrationTests.REPLICA_URL,
+        "datasource.replicas[0].username=sa",
+        "datasource.replicas[0].password=password",
+        "datasource.replicas[1].url=jdbc:h2:mem:h2missing;IFEXISTS=TRUE",
+        "datasource.replicas[1].username=sa",
+        "datasource.replicas[1].password=password"
+})
+@ExtendWith(SpringExtension.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@AutoConfigureMockMvc
+public class ReadWriteRoutingIntegrationTests {
+
+    static final String REPLICA_URL =
+            "jdbc:h2:mem:h2replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    private MockMvc mockMvc;
+
+    private BookService bookService;
+
+    private JdbcTemplate primary;
+
+    private JdbcTemplate replica;
+
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    public ReadWriteRoutingIntegrationTests(MockMvc mockMvc, BookService bookService, JdbcTemplate jdbcTemplate) {
+        this.mockMvc = mockMvc;
+        this.bookService = bookService;
+        this.primary = jdbcTemplate;
+        this.replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "password"));
+        this.objectMapper = new ObjectMapper();
+    }
+
+    @BeforeEach
+    public void copySchemaToReplica() {
+
+        replica.execute("DROP ALL OBJECTS");
+
+        primary.queryForList("SCRIPT NODATA", String.class).forEach(replica::execute);
+        // Hibernate only creates the tables on the primary. SCRIPT NODATA returns the DDL of the primary.
+    }
+
+    @Test
+    public void testWritesGoToPrimary() {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        assertThat(primary.queryForObject("SELECT COUNT(*) FROM books", Long.class)).isEqualTo(1);
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM books", Long.class)).isZero();
+    }
+
+    @Test
+    public void testReadOnlyTransactionsReadFromReplica() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!bookService.getBooks().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // The first health check runs in the background, and the reads go to the primary until it has passed.
+
+        assertThat(bookService.getBooks()).isEmpty();
+        // The book has only been written to the primary.
+
+        replica.update("INSERT INTO books (isbn, title, version) VALUES (?, ?, 0)", book.getIsbn(), "REPLICA");
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(bookService.getBooks()).extracting(Book::getTitle).containsExactly("REPLICA");
+        }
+        // Round-robin over the replicas never picks the missing one, and never falls back to the primary while the
+        // other replica is healthy.
+    }
+
+    // The replica has not caught up with the book just written (H2 never does), so a cache filled from the replica
+    // would keep the book missing until it expires.
+    @Test
+    public void testCachedReadsAndVersionChecksReadFromPrimary() {
+
+        Book book = TestData.createTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        assertThat(bookService.isPresent(book.getIsbn())).isTrue();
+        assertThat(bookService.getBook(book.getIsbn())).map(Book::getTitle).contains(book.getTitle());
+        assertThat(bookService.getBookVersion(book.getIsbn())).isPresent();
+    }
+
+    @Test
+    public void testUpdateRightAfterCreateFindsAuthor() throws Exception {
+
+        String response = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .post("/authors")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"name\": \"ORIG\", \"age\": 80}"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        Long id = objectMapper.readTree(response).get("id").asLong();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .put("/authors/" + id)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"name\": \"NEW\", \"age\": 81}"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk());
+        // The existence check would return 404 (and cache it) if it read from the replica.
+    }
+
+    // Unlike the tests above, which call the services directly, a request runs several transactions one after another:
+    // PUT /authors/{id} checks that the author exists, then updates it.
+    @Test
+    public void testWriteAfterReadInSameRequestGoesToPrimary() throws Exception {
+
+        for (JdbcTemplate database : new JdbcTemplate[]{primary, replica}) {
+            database.update("INSERT INTO authors (id, name, age, version) VALUES (1, 'ORIG', 80, 0)");
+        }
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .put("/authors/1")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"name\": \"NEW\", \"age\": 81}"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk());
+
+        assertThat(primary.queryForMap("SELECT name, version FROM authors WHERE id = 1"))
+                .containsEntry("name", "NEW")
+                .containsEntry("version", 1L);
+        assertThat(replica.queryForMap("SELECT name, version FROM authors WHERE id = 1"))
+                .containsEntry("name", "ORIG")
+                .containsEntry("version", 0L);
+    }
+}
@@ -1,22 +1,30 @@
 package com.example.database.controllers;
 
 import com.example.database.TestData;
+import com.example.database.domain.dto.AuthorDto;
 import com.example.database.domain.entities.Author;
+import com.example.database.domain.entities.Book;
 import com.example.database.services.AuthorService;
+import com.example.database.services.BookService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 // @AutoConfigureMockMvc is part of Spring Test and provides a way to test Spring MVC applications without starting a
 // full HTTP server. It allows you to simulate HTTP requests and responses, making it ideal for testing controllers.
 
@@ -30,14 +38,17 @@ public class AuthorControllerIntegrationTests {
 
     private AuthorService authorService;
 
+    private BookService bookService;
+
     private ObjectMapper objectMapper;
-    // ModelMapper from the ModelMapper library is used to map DTOs to domain entities and vice versa. ObjectMapper from
-    // the Jackson library serialises (i.e. marshals) Java objects to JSON objects and vice versa.
+    // The mappers generated by MapStruct are used to map DTOs to domain entities and vice versa. ObjectMapper from the
+    // Jackson library serialises (i.e. marshals) Java objects to JSON objects and vice versa.
 
     @Autowired
-    public AuthorControllerIntegrationTests(MockMvc mockMvc, AuthorService authorService) {
+    public AuthorControllerIntegrationTests(MockMvc mockMvc, AuthorService authorService, BookService bookService) {
         this.mockMvc = mockMvc;
         this.authorService = authorService;
+        this.bookService = bookService;
         this.objectMapper = new ObjectMapper();
     }
 
@@ -81,6 +92,36 @@ public class AuthorControllerIntegrationTests {
         // The $ sign serves as the root element in a JSON document.
     }
 
+    @Test
+    public void testCreateAuthorControllerReadsAndWritesSmile() throws Exception {
+
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+        Author author = TestData.createTestAuthor();
+        author.setId(null);
+
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+
+        byte[] response = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .post("/authors")
+                                .contentType(smile)
+                                .accept(smile)
+                                .content(smileMapper.writeValueAsBytes(author)))
+                .andExpect(
+                        MockMvcResultMatchers.status().isCreated())
+                .andExpect(
+                        MockMvcResultMatchers.content().contentType(smile))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        AuthorDto createdAuthor = smileMapper.readValue(response, AuthorDto.class);
+
+        assertThat(createdAuthor.getId()).isNotNull();
+        assertThat(createdAuthor.getName()).isEqualTo(author.getName());
+    }
+
     @Test
     public void testGetAuthorsControllerReturnsHttpStatus200() throws Exception {
 
@@ -109,6 +150,76 @@ public class AuthorControllerIntegrationTests {
                         MockMvcResultMatchers.jsonPath("$[0].age").value(author.getAge()));
     }
 
+    @Test
+    public void testStreamAuthorsControllerReturnsOneAuthorPerLine() throws Exception {
+
+        Author author = TestData.createTestAuthor();
+        Author anotherAuthor = TestData.createAnotherTestAuthor();
+
+        authorService.createAuthor(author);
+        authorService.createAuthor(anotherAuthor);
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors")
+                                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(
+                        MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        // The body is written asynchronously, so the async dispatch must complete before the response can be read.
+
+        String body = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .asyncDispatch(result))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] lines = body.split("\n");
+
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], AuthorDto.class).getName()).isEqualTo(author.getName());
+        assertThat(objectMapper.readValue(lines[1], AuthorDto.class).getName()).isEqualTo(anotherAuthor.getName());
+    }
+
+    @Test
+    public void testStreamReactiveAuthorsControllerReturnsOneAuthorPerLine() throws Exception {
+
+        Author author = TestData.createTestAuthor();
+        Author anotherAuthor = TestData.createAnotherTestAuthor();
+
+        authorService.createAuthor(author);
+        authorService.createAuthor(anotherAuthor);
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/reactive/authors")
+                                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(
+                        MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        // The authors are read over R2DBC from the rows written through JPA.
+
+        String body = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .asyncDispatch(result))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] lines = body.split("\n");
+
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], AuthorDto.class).getName()).isEqualTo(author.getName());
+        assertThat(objectMapper.readValue(lines[1], AuthorDto.class).getName()).isEqualTo(anotherAuthor.getName());
+    }
+
     @Test
     public void testGetAuthorControllerReturnsHttpStatus200IfAuthorExists() throws Exception {
 
@@ -141,6 +252,124 @@ public class AuthorControllerIntegrationTests {
                         MockMvcResultMatchers.jsonPath("$.age").value(author.getAge()));
     }
 
+    @Test
+    public void testGetAuthorBooksControllerReturnsPagesOfTheAuthorsBooks() throws Exception {
+
+        Author author = authorService.createAuthor(TestData.createTestAuthor());
+        Author anotherAuthor = authorService.createAuthor(TestData.createAnotherTestAuthor());
+
+        for (int i = 3; i > 0; i--) {
+            bookService.createUpdateBook("978-" + i, Book.builder().title("Title " + i).author(author).build());
+        }
+        bookService.createUpdateBook("978-0", Book.builder().title("Other").author(anotherAuthor).build());
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/" + author.getId() + "/books?size=2"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content.length()").value(2))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value("978-1"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[1].isbn").value("978-2"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].author.name").value(author.getName()))
+                .andReturn();
+
+        String next = objectMapper.readTree(result.getResponse().getContentAsString()).get("next").asText();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/" + author.getId() + "/books?size=2&after=" + next))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content.length()").value(1))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value("978-3"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    public void testGetAuthorBooksControllerReturnsHttpStatus404IfAuthorDoesNotExist() throws Exception {
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/99/books"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    public void testGetAuthorWithFieldsControllerReturnsOnlyThoseFields() throws Exception {
+
+        Author author = TestData.createTestAuthor();
+
+        authorService.createAuthor(author);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/1?fields=name"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.content().json("{\"name\": \"" + author.getName() + "\"}", true));
+    }
+
+    @Test
+    public void testGetAuthorControllerReturnsHttpStatus304IfETagMatches() throws Exception {
+
+        Author author = TestData.createTestAuthor();
+
+        authorService.createAuthor(author);
+
+        String eTag = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/1"))
+                .andExpect(
+                        MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/1")
+                                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(
+                        MockMvcResultMatchers.status().isNotModified());
+    }
+
+    @Test
+    public void testGetAuthorControllerReturnsHttpStatus200IfETagIsStale() throws Exception {
+
+        Author author = TestData.createTestAuthor();
+
+        Author createdAuthor = authorService.createAuthor(author);
+
+        String eTag = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/" + createdAuthor.getId()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        createdAuthor.setName("UPDATED");
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .put("/authors/" + createdAuthor.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createdAuthor)));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/" + createdAuthor.getId())
+                                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.name").value("UPDATED"));
+        // Every update increments the row version, so the ETag the client holds no longer matches.
+    }
+
     @Test
     public void testGetAuthorControllerReturnsHttpStatus404IfAuthorDoesNotExist() throws Exception {
 
@@ -1,21 +1,58 @@
 package com.example.database.controllers;
 
 import com.example.database.TestData;
+import com.example.database.config.CacheConfig;
+import com.example.database.domain.BookPatchStatus;
+import com.example.database.domain.dto.BookDto;
 import com.example.database.domain.entities.Author;
 import com.example.database.domain.entities.Book;
+import com.example.database.services.BookImportService;
 import com.example.database.services.BookService;
+import com.example.database.services.impl.BookPatchQueue;
+import com.example.database.services.impl.BookServiceImpl;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 
 @SpringBootTest
 @ExtendWith(SpringExtension.class)
@@ -23,77 +60,922 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 @AutoConfigureMockMvc
 public class BookControllerIntegrationTests {
 
-    private MockMvc mockMvc;
+    private MockMvc mockMvc;
+
+    private BookService bookService;
+
+    private BookImportService bookImportService;
+
+    private ObjectMapper objectMapper;
+
+    private Statistics statistics;
+
+    private MeterRegistry meterRegistry;
+
+    private BookPatchQueue bookPatchQueue;
+
+    private EntityManager entityManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Cache books;
+
+    @Autowired
+    public BookControllerIntegrationTests(
+            MockMvc mockMvc,
+            BookService bookService,
+            BookImportService bookImportService,
+            EntityManagerFactory entityManagerFactory,
+            MeterRegistry meterRegistry,
+            BookPatchQueue bookPatchQueue,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            CacheManager cacheManager) {
+        this.mockMvc = mockMvc;
+        this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.objectMapper = new ObjectMapper();
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.meterRegistry = meterRegistry;
+        this.bookPatchQueue = bookPatchQueue;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.books = cacheManager.getCache(CacheConfig.BOOKS);
+    }
+
+    @Test
+    public void testCreateBookControllerReturnsHttpStatus201() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        String bookJson = objectMapper.writeValueAsString(book);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .put("/books/" + book.getIsbn())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(bookJson))
+                .andExpect(
+                        MockMvcResultMatchers.status().isCreated());
+    }
+
+    @Test
+    public void testCreateBookControllerReturnsCreatedBook() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        String bookJson = objectMapper.writeValueAsString(book);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .put("/books/" + book.getIsbn())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(bookJson))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.isbn").value(book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.title").value(book.getTitle()));
+    }
+
+    @Test
+    public void testCreateBookWithAuthorIdControllerOnlyWritesTheBook() throws Exception {
+
+        Book book = bookService.createUpdateBook("978-0", TestData.createTestBook(TestData.createTestAuthor()));
+        Long authorId = book.getAuthor().getId();
+
+        Book anotherBook = TestData.createAnotherTestBook(null);
+
+        statistics.clear();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .put("/books/" + anotherBook.getIsbn())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"title\": \"" + anotherBook.getTitle() + "\", \"authorId\": " + authorId + "}"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isCreated())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.author.id").value(authorId))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.authorId").doesNotExist());
+
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getEntityUpdateCount()).isZero();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        // The upsert of the book is the only statement: the author is neither loaded nor merged.
+
+        assertThat(bookService.getBook(anotherBook.getIsbn()).orElseThrow().getAuthor().getName())
+                .isEqualTo(book.getAuthor().getName());
+    }
+
+    @Test
+    public void testCreateBookWithAuthorIdControllerReturnsHttpStatus400IfAuthorDoesNotExist() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .put("/books/" + book.getIsbn())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"title\": \"" + book.getTitle() + "\", \"authorId\": 99}"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isBadRequest());
+
+        assertThat(bookService.isPresent(book.getIsbn())).isFalse();
+    }
+
+    @Test
+    public void testCreateUpdateBooksControllerReturnsStatusPerIsbn() throws Exception {
+
+        Author author = TestData.createTestAuthor();
+
+        Book book = TestData.createTestBook(author);
+        Book anotherBook = TestData.createAnotherTestBook(author);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        book.setTitle("UPDATED");
+
+        String booksJson = objectMapper.writeValueAsString(List.of(book, anotherBook));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .put("/books")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(booksJson))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$['" + book.getIsbn() + "']").value("UPDATED"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$['" + anotherBook.getIsbn() + "']").value("CREATED"));
+
+        assertThat(bookService.getBook(book.getIsbn())).get().extracting(Book::getTitle).isEqualTo("UPDATED");
+        assertThat(bookService.getBook(anotherBook.getIsbn())).isPresent();
+    }
+
+    @Test
+    public void testCreateUpdateBooksControllerCreatesSharedUnknownAuthorOnce() throws Exception {
+
+        Author author = TestData.createTestAuthor();
+        // The author does not exist yet, so it is created with a generated ID rather than ID 1.
+
+        Book book = TestData.createTestBook(author);
+        Book anotherBook = TestData.createAnotherTestBook(author);
+
+        String booksJson = objectMapper.writeValueAsString(List.of(book, anotherBook));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .put("/books")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(booksJson))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk());
+
+        Long authorId = bookService.getBook(book.getIsbn()).orElseThrow().getAuthor().getId();
+
+        assertThat(bookService.getBook(anotherBook.getIsbn()).orElseThrow().getAuthor().getId()).isEqualTo(authorId);
+        // Both books reference the one created author, rather than an author each.
+    }
+
+    @Test
+    public void testCreateUpdateBooksControllerReturnsHttpStatus400IfIsbnIsMissing() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+        book.setIsbn(null);
+
+        String booksJson = objectMapper.writeValueAsString(List.of(book));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .put("/books")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(booksJson))
+                .andExpect(
+                        MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void testImportBooksControllerImportsCsvAndReportsRejects() throws Exception {
+
+        Author author = TestData.createTestAuthor();
+
+        Book book = TestData.createTestBook(author);
+        Book anotherBook = TestData.createAnotherTestBook(null);
+
+        Book savedBook = bookService.createUpdateBook(book.getIsbn(), book);
+
+        String csv = String.join("\n",
+                "title,isbn,author_name,author_age",
+                "\"UPDATED, again\"," + book.getIsbn() + "," + author.getName() + ",",
+                "Missing ISBN,,,",
+                anotherBook.getTitle() + "," + anotherBook.getIsbn() + ",New Author,not a number",
+                anotherBook.getTitle() + "," + anotherBook.getIsbn() + ",New Author,40");
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .post("/books/import")
+                                .contentType("text/csv")
+                                .content(csv))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.processed").value(4))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.created").value(1))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.updated").value(1))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejected").value(2))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejects[0].line").value(3))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejects[1].line").value(4));
+
+        Book updatedBook = bookService.getBook(book.getIsbn()).orElseThrow();
+        assertThat(updatedBook.getTitle()).isEqualTo("UPDATED, again");
+        assertThat(updatedBook.getAuthor().getId()).isEqualTo(savedBook.getAuthor().getId());
+        // The author is resolved by name, so the existing author is kept rather than duplicated.
+
+        Book createdBook = bookService.getBook(anotherBook.getIsbn()).orElseThrow();
+        assertThat(createdBook.getAuthor().getName()).isEqualTo("New Author");
+        assertThat(createdBook.getAuthor().getAge()).isEqualTo(40);
+    }
+
+    @Test
+    public void testImportBooksControllerImportsNdjson() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+        Book anotherBook = TestData.createAnotherTestBook(TestData.createTestAuthor());
+
+        String ndjson = objectMapper.writeValueAsString(book) + "\n"
+                + "{not json\n"
+                + objectMapper.writeValueAsString(anotherBook) + "\n";
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .post("/books/import")
+                                .contentType(MediaType.APPLICATION_NDJSON)
+                                .content(ndjson))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.created").value(2))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejected").value(1))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejects[0].line").value(2));
+
+        assertThat(bookService.getBook(book.getIsbn()).orElseThrow().getAuthor().getId())
+                .isEqualTo(bookService.getBook(anotherBook.getIsbn()).orElseThrow().getAuthor().getId());
+        // Both books name the same new author, which is created once.
+    }
+
+    @Test
+    public void testImportBooksControllerReturnsHttpStatus400IfCsvHeaderIsInvalid() throws Exception {
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .post("/books/import")
+                                .contentType("text/csv")
+                                .content("name,age\nAbigail Rose,80"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void testImportBooksControllerRejectsTooLongAuthorName() throws Exception {
+
+        String csv = "isbn,title,author_name\n123-1-2345-6789-0,Title," + "A".repeat(256);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .post("/books/import")
+                                .contentType("text/csv")
+                                .content(csv))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejected").value(1))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejects[0].reason")
+                                .value("author name must not be longer than 255"));
+    }
+
+    @Test
+    public void testImportBooksControllerRejectsChunkThatDatabaseRefuses() throws Exception {
+
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createNativeQuery("ALTER TABLE books ADD CONSTRAINT books_title_check CHECK (title <> 'REFUSED')")
+                .executeUpdate());
+        // A constraint that only the database checks, so that the chunk passes validation but fails to be written.
+
+        String csv = "isbn,title\n123-1-2345-6789-0,Accepted\n123-1-2345-6789-1,REFUSED";
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .post("/books/import")
+                                .contentType("text/csv")
+                                .content(csv))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.created").value(0))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejected").value(2))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejects[0].line").value(2))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejects[1].line").value(3));
+        // The records of the chunk are written together, so they are rejected together.
+
+        assertThat(bookService.isPresent("123-1-2345-6789-0")).isFalse();
+    }
+
+    @Test
+    public void testImportBooksEvictsCommittedChunksIfImportFails() {
+
+        String isbn = "000-0-0000-0000-0";
+
+        assertThat(bookService.isPresent(isbn)).isFalse();
+        // Caches the absence of the book.
+
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            ndjson.append("{\"isbn\": \"").append(i == 0 ? isbn : "import-" + i).append("\", \"title\": \"T\"}\n");
+        }
+        // Exactly one chunk, which is committed before the upload breaks off.
+
+        StringReader lines = new StringReader(ndjson.toString());
+        Reader reader = new Reader() {
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = lines.read(buffer, offset, length);
+                if (read == -1) {
+                    throw new IOException("Connection reset");
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        assertThatThrownBy(() -> bookImportService.importBooks(reader, BookImportService.Format.NDJSON))
+                .isInstanceOf(UncheckedIOException.class);
+
+        assertThat(bookService.isPresent(isbn)).isTrue();
+    }
+
+    @Test
+    public void testExportBooksControllerReturnsOneBookPerLine() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+        Book anotherBook = TestData.createAnotherTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+        bookService.createUpdateBook(anotherBook.getIsbn(), anotherBook);
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/export"))
+                .andExpect(
+                        MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .asyncDispatch(result))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<BookDto> books = body.lines()
+                .map(line -> {
+                    try {
+                        return objectMapper.readValue(line, BookDto.class);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .sorted(Comparator.comparing(BookDto::getIsbn))
+                .toList();
+        // The export is not ordered, since it is a single scan of the table.
+
+        assertThat(books).hasSize(2);
+        assertThat(books.get(0).getAuthor().getName()).isEqualTo(book.getAuthor().getName());
+        assertThat(books.get(1).getTitle()).isEqualTo(anotherBook.getTitle());
+        assertThat(books.get(1).getAuthor()).isNull();
+    }
+
+    @Test
+    public void testExportBooksControllerReturnsGzippedCsv() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+        book.setTitle("The Shadow, in the \"Attic\"");
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/export?format=csv")
+                                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andReturn();
+
+        byte[] body = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .asyncDispatch(result))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8);
+
+        assertThat(csv.lines()).containsExactly(
+                "isbn,title,author_id,author_name,author_age",
+                book.getIsbn() + ",\"The Shadow, in the \"\"Attic\"\"\","
+                        + bookService.getBook(book.getIsbn()).orElseThrow().getAuthor().getId() + ",Abigail Rose,80");
+    }
+
+    @Test
+    public void testExportBooksControllerDoesNotGzipIfGzipIsRefused() throws Exception {
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/export?format=csv")
+                                .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, *"))
+                .andReturn();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .asyncDispatch(result))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(
+                        MockMvcResultMatchers.content().string("isbn,title,author_id,author_name,author_age\n"));
+    }
+
+    @Test
+    public void testExportBooksControllerCsvWithLineBreaksCanBeImportedAgain() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+        book.setTitle("The Shadow\nin the \"Attic\"");
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/export?format=csv"))
+                .andReturn();
+
+        String csv = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .asyncDispatch(result))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        bookService.patchBook(book.getIsbn(), Book.builder().title("UPDATED").build());
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .post("/books/import")
+                                .contentType("text/csv")
+                                .content(csv + "123-1-2345-6789-1,Next Line,,,\n"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.processed").value(2))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.rejected").value(0));
+        // The record after the one that spans two lines is still read as a record of its own.
+
+        assertThat(bookService.getBook(book.getIsbn()).orElseThrow().getTitle()).isEqualTo(book.getTitle());
+    }
+
+    @Test
+    public void testGetBooksControllerReturnsHttpStatus200() throws Exception {
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    public void testGetBooksControllerReturnsBooks() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].title").value(book.getTitle()));
+    }
+
+    @Test
+    public void testGetBooksControllerReturnsCborIfAccepted() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        byte[] response = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books")
+                                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        JsonNode page = new ObjectMapper(new CBORFactory()).readTree(response);
+
+        assertThat(page.at("/content/0/isbn").asText()).isEqualTo(book.getIsbn());
+        assertThat(page.at("/content/0/author/name").asText()).isEqualTo(book.getAuthor().getName());
+        assertThat(page.at("/totalElements").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGetBooksWithFieldsControllerSelectsOnlyThoseFields() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+        Book anotherBook = TestData.createAnotherTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+        bookService.createUpdateBook(anotherBook.getIsbn(), anotherBook);
+
+        statistics.clear();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books?fields=title,isbn&sort=isbn"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].title").value(book.getTitle()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].author").doesNotExist())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(2));
+
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        // Neither the books nor (through the eager association) their authors are loaded as entities.
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books?fields=isbn,author.name&sort=isbn"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].author.name").value(book.getAuthor().getName()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].author.age").doesNotExist())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[1].author").value(nullValue()));
+    }
+
+    @Test
+    public void testGetBooksWithFieldsControllerReturnsHttpStatus400IfAfterIsGiven() throws Exception {
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books?after=&fields=isbn,title"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void testGetBooksWithFieldsControllerReturnsHttpStatus400IfCountIsNotExact() throws Exception {
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books?fields=isbn,title&count=none"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isBadRequest());
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books?fields=isbn,title&count=estimated"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isBadRequest());
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books?fields=isbn,title&count=exact"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(0));
+    }
+
+    @Test
+    public void testGetBookWithFieldsControllerReturnsHttpStatus400IfFieldIsUnknown() throws Exception {
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/123?fields=isbn,price"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void testSearchBooksControllerRanksTitlesByTokenAndPrefix() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+        Book anotherBook = TestData.createAnotherTestBook(null);
+        anotherBook.setTitle("Shadows over the Wall");
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+        bookService.createUpdateBook(anotherBook.getIsbn(), anotherBook);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/search?q=shadow"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(2))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].author.name").value(book.getAuthor().getName()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[1].isbn").value(anotherBook.getIsbn()));
+        // "shadow" is a whole word of the first title, but only a prefix of a word of the second.
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/search?q=SHADOWS wal"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(1))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(anotherBook.getIsbn()));
+    }
+
+    @Test
+    public void testSearchBooksControllerPagesRankedTitlesAndNeedsTwoCharactersForPrefix() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+        Book anotherBook = TestData.createAnotherTestBook(null);
+        anotherBook.setTitle("Shadows over the Wall");
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+        bookService.createUpdateBook(anotherBook.getIsbn(), anotherBook);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/search?q=shadow&size=1&page=1"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(2))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content.length()").value(1))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(anotherBook.getIsbn()));
+        // The second page holds the second best match, while the total still counts every match.
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/search?q=s"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(0));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/search?q=sh"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(2));
+    }
+
+    @Test
+    public void testSearchBooksControllerFollowsPatchesAndDeletes() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .patch("/books/" + book.getIsbn())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"title\": \"Émile in the Garden\"}"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk());
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/search?q=emile"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(book.getIsbn()));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/search?q=attic"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(0));
+
+        bookService.deleteBook(book.getIsbn());
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/search?q=emile"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(0));
+    }
+
+    @Test
+    public void testGetBooksWithoutCountControllerReturnsSlice() throws Exception {
 
-    private BookService bookService;
+        Book book = TestData.createTestBook(null);
+        Book anotherBook = TestData.createAnotherTestBook(null);
 
-    private ObjectMapper objectMapper;
+        bookService.createUpdateBook(book.getIsbn(), book);
+        bookService.createUpdateBook(anotherBook.getIsbn(), anotherBook);
 
-    @Autowired
-    public BookControllerIntegrationTests(MockMvc mockMvc, BookService bookService) {
-        this.mockMvc = mockMvc;
-        this.bookService = bookService;
-        this.objectMapper = new ObjectMapper();
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books?count=none&size=1"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.last").value(false))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").doesNotExist());
     }
 
     @Test
-    public void testCreateBookControllerReturnsHttpStatus201() throws Exception {
+    public void testGetBooksWithEstimatedCountControllerReturnsTotal() throws Exception {
 
         Book book = TestData.createTestBook(null);
+        Book anotherBook = TestData.createAnotherTestBook(null);
 
-        String bookJson = objectMapper.writeValueAsString(book);
+        bookService.upsertBook(book.getIsbn(), book);
+        bookService.upsertBook(anotherBook.getIsbn(), anotherBook);
 
         mockMvc.perform(
                         MockMvcRequestBuilders
-                                .put("/books/" + book.getIsbn())
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .content(bookJson))
+                                .get("/books?count=estimated&size=1"))
                 .andExpect(
-                        MockMvcResultMatchers.status().isCreated());
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.totalElements").value(2));
     }
 
     @Test
-    public void testCreateBookControllerReturnsCreatedBook() throws Exception {
+    public void testGetBooksControllerReturnsHttpStatus400IfCountModeIsInvalid() throws Exception {
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books?count=sometimes"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void testGetBooksByCursorControllerReturnsPagesInIsbnOrder() throws Exception {
 
         Book book = TestData.createTestBook(null);
+        Book anotherBook = TestData.createAnotherTestBook(null);
 
-        String bookJson = objectMapper.writeValueAsString(book);
+        bookService.createUpdateBook(anotherBook.getIsbn(), anotherBook);
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        MvcResult firstPage = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books?after=&size=1"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content.length()").value(1))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.next").isString())
+                .andReturn();
+
+        String next = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.next");
 
         mockMvc.perform(
                         MockMvcRequestBuilders
-                                .put("/books/" + book.getIsbn())
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .content(bookJson))
+                                .get("/books")
+                                .param("after", next)
+                                .param("size", "1"))
                 .andExpect(
-                        MockMvcResultMatchers.jsonPath("$.isbn").value(book.getIsbn()))
+                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(anotherBook.getIsbn()))
                 .andExpect(
-                        MockMvcResultMatchers.jsonPath("$.title").value(book.getTitle()));
+                        MockMvcResultMatchers.jsonPath("$.next").isEmpty());
     }
 
     @Test
-    public void testGetBooksControllerReturnsHttpStatus200() throws Exception {
+    public void testGetBooksByCursorControllerReturnsHttpStatus400IfCursorIsInvalid() throws Exception {
 
         mockMvc.perform(
                         MockMvcRequestBuilders
-                                .get("/books"))
+                                .get("/books?after=not*a*cursor"))
                 .andExpect(
-                        MockMvcResultMatchers.status().isOk());
+                        MockMvcResultMatchers.status().isBadRequest());
     }
 
     @Test
-    public void testGetBooksControllerReturnsBooks() throws Exception {
+    public void testStreamReactiveBooksControllerReturnsBooksWithAuthorsInIsbnOrder() throws Exception {
 
-        Book book = TestData.createTestBook(null);
+        Author author = TestData.createTestAuthor();
+
+        Book book = TestData.createTestBook(author);
+        Book anotherBook = TestData.createAnotherTestBook(null);
+
+        bookService.createUpdateBook(anotherBook.getIsbn(), anotherBook);
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/reactive/books")
+                                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(
+                        MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .asyncDispatch(result))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] lines = body.split("\n");
+
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], BookDto.class).getIsbn()).isEqualTo(book.getIsbn());
+        assertThat(objectMapper.readValue(lines[0], BookDto.class).getAuthor().getName()).isEqualTo(author.getName());
+        assertThat(objectMapper.readValue(lines[1], BookDto.class).getAuthor()).isNull();
+    }
+
+    @Test
+    public void testGetReactiveBookControllerReturnsBookIfBookExists() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
 
         bookService.createUpdateBook(book.getIsbn(), book);
 
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/reactive/books/" + book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
         mockMvc.perform(
                         MockMvcRequestBuilders
-                                .get("/books"))
+                                .asyncDispatch(result))
                 .andExpect(
-                        MockMvcResultMatchers.jsonPath("$.content[0].isbn").value(book.getIsbn()))
+                        MockMvcResultMatchers.status().isOk())
                 .andExpect(
-                        MockMvcResultMatchers.jsonPath("$.content[0].title").value(book.getTitle()));
+                        MockMvcResultMatchers.jsonPath("$.title").value(book.getTitle()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.author.name").value(book.getAuthor().getName()));
+    }
+
+    @Test
+    public void testGetReactiveBookControllerReturnsHttpStatus404IfBookDoesNotExist() throws Exception {
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/reactive/books/123-1-2345-6789-0"))
+                .andReturn();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .asyncDispatch(result))
+                .andExpect(
+                        MockMvcResultMatchers.status().isNotFound());
     }
 
     @Test
@@ -126,6 +1008,166 @@ public class BookControllerIntegrationTests {
                         MockMvcResultMatchers.jsonPath("$.title").value(book.getTitle()));
     }
 
+    @Test
+    public void testGetBookControllerServesRepeatedReadsFromCache() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        statistics.clear();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(
+                            MockMvcRequestBuilders
+                                    .get("/books/" + book.getIsbn()))
+                    .andExpect(
+                            MockMvcResultMatchers.jsonPath("$.title").value(book.getTitle()));
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        // Only the first read goes to the database.
+    }
+
+    @Test
+    public void testGetBookControllerRecordsMetricsPerLayer() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/" + book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk());
+
+        assertThat(meterRegistry.get("service.invocations")
+                .tag("class", BookServiceImpl.class.getName())
+                .tag("method", "getBook")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("spring.data.repository.invocations")
+                .tag("repository", "BookRepository")
+                .tag("method", "findById")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("http.server.requests.statements")
+                .tag("uri", "/books/{isbn}")
+                .summary().totalAmount()).isEqualTo(1);
+        // One request, one service call, one repository call and one SELECT (the book is not cached yet).
+    }
+
+    @Test
+    public void testPatchBookControllerEvictsCachedBook() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+        bookService.getBook(book.getIsbn());
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .patch("/books/" + book.getIsbn())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"UPDATED\"}"));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/" + book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.title").value("UPDATED"));
+    }
+
+    @Test
+    public void testCachedBookIsEvictedOnlyWhenWriteCommits() {
+
+        Book book = TestData.createTestBook(null);
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+        bookService.getBook(book.getIsbn());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            bookService.patchBook(book.getIsbn(), Book.builder().title("UPDATED").build());
+            assertThat(books.get(book.getIsbn())).isNotNull();
+        });
+        // Until the patch commits, a reader that missed the cache would cache the old book again.
+
+        assertThat(books.get(book.getIsbn())).isNull();
+    }
+
+    @Test
+    public void testGetBookReturnsCopyNotManagedByCallersSession() {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Book cachedBook = bookService.getBook(book.getIsbn()).orElseThrow();
+            assertThat(entityManager.contains(cachedBook)).isFalse();
+            assertThat(entityManager.contains(cachedBook.getAuthor())).isFalse();
+        });
+    }
+
+    @Test
+    public void testGetBookControllerReturnsHttpStatus304IfETagMatches() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        String eTag = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/" + book.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        statistics.clear();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/" + book.getIsbn())
+                                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(
+                        MockMvcResultMatchers.status().isNotModified())
+                .andExpect(
+                        MockMvcResultMatchers.content().string(""));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        // The unchanged book is confirmed by the version-only lookup, without loading the book or its author.
+    }
+
+    @Test
+    public void testGetBookControllerReturnsNewETagAfterPatch() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+
+        bookService.createUpdateBook(book.getIsbn(), book);
+
+        String eTag = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/" + book.getIsbn()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                        .patch("/books/" + book.getIsbn())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"UPDATED\"}"));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/" + book.getIsbn())
+                                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.header().string(HttpHeaders.ETAG, not(eTag)))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.title").value("UPDATED"));
+    }
+
     @Test
     public void testGetBookControllerReturnsHttpStatus404IfBookDoesNotExist() throws Exception {
 
@@ -237,6 +1279,148 @@ public class BookControllerIntegrationTests {
                         MockMvcResultMatchers.jsonPath("$.author").value(createdBook.getAuthor()));
     }
 
+    @Test
+    public void testPatchBookAsyncControllerReturnsHttpStatus202AndAppliesPatch() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        Book createdBook = bookService.createUpdateBook(book.getIsbn(), book);
+        bookService.getBook(createdBook.getIsbn());
+        // Caches the book, which the write-behind batch must evict.
+
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .patch("/books/" + createdBook.getIsbn())
+                                .header("Prefer", "respond-async")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"title\":\"UPDATED\"}"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isAccepted())
+                .andExpect(
+                        MockMvcResultMatchers.header().string("Preference-Applied", "respond-async"))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.isbn").value(createdBook.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.state").value("QUEUED"))
+                .andReturn();
+
+        String token = JsonPath.read(result.getResponse().getContentAsString(), "$.token");
+        assertThat(result.getResponse().getHeader(HttpHeaders.LOCATION)).isEqualTo("/books/patches/" + token);
+
+        awaitPatch(token);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/patches/" + token))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk())
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.state").value("APPLIED"));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/" + createdBook.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.jsonPath("$.title").value("UPDATED"));
+    }
+
+    @Test
+    public void testPatchBookAsyncControllerCollapsesQueuedPatchesOfTheSameBook() throws Exception {
+
+        Book book = TestData.createTestBook(null);
+
+        Book createdBook = bookService.createUpdateBook(book.getIsbn(), book);
+
+        List<String> tokens = new ArrayList<>();
+
+        synchronized (bookPatchQueue) {
+            for (String title : List.of("FIRST", "SECOND", "THIRD")) {
+                MvcResult result = mockMvc.perform(
+                                MockMvcRequestBuilders
+                                        .patch("/books/" + createdBook.getIsbn())
+                                        .header("Prefer", "respond-async")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"title\":\"" + title + "\"}"))
+                        .andExpect(
+                                MockMvcResultMatchers.status().isAccepted())
+                        .andReturn();
+                tokens.add(JsonPath.read(result.getResponse().getContentAsString(), "$.token"));
+            }
+
+            assertThat(bookPatchQueue.size()).isEqualTo(1);
+        }
+        // Holding the queue's monitor keeps the flusher from taking a batch until all three patches are queued.
+
+        for (String token : tokens) {
+            assertThat(awaitPatch(token).getState()).isEqualTo(BookPatchStatus.State.APPLIED);
+        }
+
+        assertThat(meterRegistry.counter("books.write-behind.patches", "outcome", "collapsed").count()).isEqualTo(2);
+        assertThat(bookService.getBook(createdBook.getIsbn()).orElseThrow().getTitle()).isEqualTo("THIRD");
+    }
+
+    @Test
+    public void testPatchBookAsyncControllerReturnsHttpStatus503IfQueueIsFull() throws Exception {
+
+        synchronized (bookPatchQueue) {
+            for (int i = 0; i < 3; i++) {
+                assertThat(bookService.patchBookAsync("123-1-2345-6789-" + i, TestData.createTestBook(null)))
+                        .isPresent();
+            }
+            // Fills the queue (books.write-behind.capacity=3 in the test properties).
+
+            mockMvc.perform(
+                            MockMvcRequestBuilders
+                                    .patch("/books/123-1-2345-6789-9")
+                                    .header("Prefer", "respond-async")
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .content("{\"title\":\"UPDATED\"}"))
+                    .andExpect(
+                            MockMvcResultMatchers.status().isServiceUnavailable())
+                    .andExpect(
+                            MockMvcResultMatchers.header().exists(HttpHeaders.RETRY_AFTER));
+
+            mockMvc.perform(
+                            MockMvcRequestBuilders
+                                    .patch("/books/123-1-2345-6789-0")
+                                    .header("Prefer", "respond-async")
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .content("{\"title\":\"UPDATED\"}"))
+                    .andExpect(
+                            MockMvcResultMatchers.status().isAccepted());
+            // A patch of a book that is already queued takes no extra room.
+        }
+    }
+
+    @Test
+    public void testGetPatchStatusControllerReportsBooksThatDoNotExist() throws Exception {
+
+        String token = bookService.patchBookAsync("123-1-2345-6789-0", TestData.createTestBook(null))
+                .orElseThrow()
+                .getToken();
+
+        assertThat(awaitPatch(token).getState()).isEqualTo(BookPatchStatus.State.NOT_FOUND);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/books/patches/unknown"))
+                .andExpect(
+                        MockMvcResultMatchers.status().isNotFound());
+    }
+
+    private BookPatchStatus awaitPatch(String token) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        BookPatchStatus status = bookService.getPatchStatus(token).orElseThrow();
+        while (status.getState() == BookPatchStatus.State.QUEUED && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = bookService.getPatchStatus(token).orElseThrow();
+        }
+
+        return status;
+    }
+
     @Test
     public void testDeleteBookControllerReturnsHttpStatus204IfBookDoesNotExist() throws Exception {
 
@@ -260,4 +1444,34 @@ public class BookControllerIntegrationTests {
                 .andExpect(
                         MockMvcResultMatchers.status().isNoContent());
     }
+
+    @Test
+    public void testDeleteBookControllerDeletesAuthor() throws Exception {
+
+        Book book = TestData.createTestBook(TestData.createTestAuthor());
+
+        Book createdBook = bookService.createUpdateBook(book.getIsbn(), book);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/" + createdBook.getAuthor().getId()))
+                .andExpect(
+                        MockMvcResultMatchers.status().isOk());
+        // Caches the author, which the delete must evict.
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .delete("/books/" + createdBook.getIsbn()))
+                .andExpect(
+                        MockMvcResultMatchers.status().isNoContent());
+
+        assertThat(bookService.isPresent(createdBook.getIsbn())).isFalse();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/authors/" + createdBook.getAuthor().getId()))
+                .andExpect(
+                        MockMvcResultMatchers.status().isNotFound());
+        // The removal cascades from the book to its author.
+    }
 }
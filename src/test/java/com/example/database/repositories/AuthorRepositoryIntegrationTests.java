@@ -67,6 +67,27 @@ public class AuthorRepositoryIntegrationTests {
         assertThat(result.get()).isEqualTo(author);
     }
 
+    @Test
+    public void testPatchAuthorRepositoryResult() {
+
+        Author author = underTest.save(TestData.createTestAuthor());
+
+        Optional<Author> result = underTest.patch(author.getId(), Author.builder().name("UPDATED").build());
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getName()).isEqualTo("UPDATED");
+        assertThat(result.get().getAge()).isEqualTo(author.getAge());
+        // Fields that are null in the patch keep their current value.
+    }
+
+    @Test
+    public void testPatchAuthorRepositoryResultIfAuthorDoesNotExist() {
+
+        Optional<Author> result = underTest.patch(1L, Author.builder().name("UPDATED").build());
+
+        assertThat(result).isNotPresent();
+    }
+
     @Test
     public void testDeleteAuthorRepositoryResult() {
 
@@ -1,12 +1,18 @@
 package com.example.database.repositories;
 
 import com.example.database.TestData;
+import com.example.database.domain.UpsertStatus;
 import com.example.database.domain.entities.Author;
 import com.example.database.domain.entities.Book;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -21,9 +27,12 @@ public class BookRepositoryIntegrationTests {
 
     private final BookRepository underTest;
 
+    private final Statistics statistics;
+
     @Autowired
-    public BookRepositoryIntegrationTests(BookRepository underTest) {
+    public BookRepositoryIntegrationTests(BookRepository underTest, EntityManagerFactory entityManagerFactory) {
         this.underTest = underTest;
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
     };
 
     @Test
@@ -58,6 +67,42 @@ public class BookRepositoryIntegrationTests {
                 .containsExactly(book, anotherBook);
     }
 
+    @Test
+    public void testGetBooksPageRepositoryResultUsesConstantNumberOfStatements() {
+
+        for (int i = 0; i < 10; i++) {
+            Author author = Author.builder().name("Author " + i).age(40 + i).build();
+            underTest.save(Book.builder().isbn("123-1-2345-6789-" + i).title("Title " + i).author(author).build());
+        }
+        // Every book has a different author, which is the worst case for loading the authors one by one.
+
+        statistics.clear();
+
+        Page<Book> result = underTest.findAll(PageRequest.of(0, 5));
+
+        assertThat(result.getContent())
+                .hasSize(5)
+                .allSatisfy(book -> assertThat(book.getAuthor().getName()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        // One SELECT for the books joined with their authors, and one SELECT COUNT for the total, however many books
+        // and authors are on the page.
+    }
+
+    @Test
+    public void testGetBookRepositoryResultUsesOneStatement() {
+
+        Author author = TestData.createTestAuthor();
+
+        Book book = underTest.save(TestData.createTestBook(author));
+
+        statistics.clear();
+
+        Optional<Book> result = underTest.findById(book.getIsbn());
+
+        assertThat(result).isPresent();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
     @Test
     public void testUpdateBookRepositoryResult() {
 
@@ -75,6 +120,38 @@ public class BookRepositoryIntegrationTests {
         assertThat(result.get()).isEqualTo(book);
     }
 
+    @Test
+    public void testUpsertBookRepositoryResult() {
+
+        Book book = TestData.createTestBook(null);
+
+        UpsertStatus created = underTest.upsert(book);
+
+        book.setTitle("UPDATED");
+        UpsertStatus updated = underTest.upsert(book);
+
+        Optional<Book> result = underTest.findById(book.getIsbn());
+
+        assertThat(created).isEqualTo(UpsertStatus.CREATED);
+        assertThat(updated).isEqualTo(UpsertStatus.UPDATED);
+        assertThat(result).isPresent();
+        assertThat(result.get().getTitle()).isEqualTo("UPDATED");
+    }
+
+    @Test
+    public void testPatchBookRepositoryResult() {
+
+        Author author = TestData.createTestAuthor();
+
+        Book book = underTest.save(TestData.createTestBook(author));
+
+        Optional<Book> result = underTest.patch(book.getIsbn(), Book.builder().title("UPDATED").build());
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getTitle()).isEqualTo("UPDATED");
+        assertThat(result.get().getAuthor()).isEqualTo(book.getAuthor());
+    }
+
     @Test
     public void testDeleteBookRepositoryResult() {
 
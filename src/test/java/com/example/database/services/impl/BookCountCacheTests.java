@@ -0,0 +1,89 @@
+package com.example.database.services.impl;
+
+import com.example.database.repositories.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Plain unit tests: the COUNT query is a mock, so that it can be held up while the counter is read.
+public class BookCountCacheTests {
+
+    @Test
+    public void testStaleCountIsServedWhileRefreshRuns() throws Exception {
+
+        BookRepository bookRepository = mock(BookRepository.class);
+        BookCountCache underTest = new BookCountCache(bookRepository, Duration.ZERO);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            when(bookRepository.count())
+                    .thenReturn(10L)
+                    .thenAnswer(invocation -> {
+                        started.countDown();
+                        release.await(5, TimeUnit.SECONDS);
+                        return 20L;
+                    });
+
+            assertThat(underTest.get()).isEqualTo(10);
+            // The first read has no count to fall back on, so it waits for the COUNT.
+
+            Thread.sleep(1);
+
+            assertThat(underTest.get()).isEqualTo(10);
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(underTest.get()).isEqualTo(10);
+            // The refresh is held up, yet the reads return the stale count at once.
+
+            release.countDown();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (underTest.get() != 20 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(underTest.get()).isEqualTo(20);
+        } finally {
+            release.countDown();
+            underTest.close();
+        }
+    }
+
+    @Test
+    public void testAdjustmentsApplyOnlyOnCommit() {
+
+        BookRepository bookRepository = mock(BookRepository.class);
+        BookCountCache underTest = new BookCountCache(bookRepository, Duration.ofMinutes(1));
+
+        when(bookRepository.count()).thenReturn(10L);
+
+        try {
+            assertThat(underTest.get()).isEqualTo(10);
+
+            TransactionSynchronizationManager.initSynchronization();
+            underTest.adjust(1);
+            TransactionSynchronizationManager.clearSynchronization();
+            // A transaction that rolls back never runs its afterCommit callbacks.
+
+            assertThat(underTest.get()).isEqualTo(10);
+
+            TransactionSynchronizationManager.initSynchronization();
+            underTest.adjust(1);
+            assertThat(underTest.get()).isEqualTo(10);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            TransactionSynchronizationManager.clearSynchronization();
+
+            assertThat(underTest.get()).isEqualTo(11);
+        } finally {
+            underTest.close();
+        }
+    }
+}
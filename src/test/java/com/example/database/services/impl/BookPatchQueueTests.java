@@ -0,0 +1,56 @@
+package com.example.database.services.impl;
+
+import com.example.database.domain.BookPatchStatus;
+import com.example.database.repositories.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Plain unit tests: the repository, the cache and the transactions are mocks, so the queue only flushes when stopped.
+public class BookPatchQueueTests {
+
+    @Test
+    public void testQueuedStatusIsNeverEvicted() throws Exception {
+
+        BookRepository bookRepository = mock(BookRepository.class);
+        CacheManager cacheManager = mock(CacheManager.class);
+
+        when(cacheManager.getCache(any())).thenReturn(mock(Cache.class));
+        when(bookRepository.patchTitles(anyMap())).thenReturn(Set.of("123"));
+
+        BookPatchQueue underTest = new BookPatchQueue(
+                bookRepository,
+                mock(BookTitleIndex.class),
+                cacheManager,
+                mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(),
+                10,
+                10,
+                Duration.ofMinutes(1),
+                Duration.ZERO);
+        // With no status retention at all, a final status is evicted as soon as it is stored.
+
+        underTest.start();
+
+        BookPatchStatus status = underTest.enqueue("123", "New Title").orElseThrow();
+
+        assertThat(underTest.getStatus(status.getToken()))
+                .hasValueSatisfying(queued -> assertThat(queued.getState()).isEqualTo(BookPatchStatus.State.QUEUED));
+
+        underTest.stop();
+        // Stopping writes the queued patch.
+
+        assertThat(underTest.getStatus(status.getToken())).isEmpty();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.database.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Plain unit tests: whether callers overlap cannot be controlled through the application, so the load itself is
+// blocked until every other caller has joined the flight.
+public class SingleFlightTests {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    public void testConcurrentLoadsOfTheSameKeyAreCoalesced() throws Exception {
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SingleFlight<String, String> underTest = new SingleFlight<>("test", meterRegistry);
+
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> underTest.load("key", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return "value";
+                })));
+            }
+
+            while (meterRegistry.counter("singleflight.coalesced", "name", "test").count() < CALLERS - 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            // Every caller but the leader is now waiting on the leader's flight.
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.counter("singleflight.loads", "name", "test").count()).isEqualTo(1);
+
+        assertThat(underTest.load("key", () -> "reloaded")).isEqualTo("reloaded");
+        // A completed flight is released, so a later caller runs a fresh load.
+    }
+
+    @Test
+    public void testFailedLoadIsSharedAndReleased() throws Exception {
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SingleFlight<String, String> underTest = new SingleFlight<>("test", meterRegistry);
+
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> leader = executor.submit(() -> underTest.load("key", () -> {
+                await(release);
+                throw new IllegalStateException("database unavailable");
+            }));
+
+            while (meterRegistry.counter("singleflight.loads", "name", "test").count() < 1) {
+                Thread.sleep(5);
+            }
+            Future<String> follower = executor.submit(() -> underTest.load("key", () -> "unused"));
+
+            while (meterRegistry.counter("singleflight.coalesced", "name", "test").count() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : List.of(leader, follower)) {
+                assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(IllegalStateException.class)
+                        .hasRootCauseMessage("database unavailable");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(underTest.load("key", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}